@@ -0,0 +1,49 @@
+package ImageHoster.benchmarks;
+
+import ImageHoster.ImageHosterApp;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+//Starts the application for the benchmarks which need the database, the services or the views
+//The application runs against a database of its own, 'imageHoster_bench' on the local Postgres by default, so that the data created by the benchmarks never mixes with real data
+//Another database can be given with -Dspring.datasource.url=... (and -Dspring.datasource.username / password), passed to the forked JVMs with -jvmArgsAppend
+final class BenchmarkContext {
+
+    private static final String DEFAULT_URL = "jdbc:postgresql://localhost:5432/imageHoster_bench";
+
+    private BenchmarkContext() {
+    }
+
+    //The blobs are stored in a temporary directory, the background migration and the management endpoints are disabled and the SQL is not printed, so that only the measured work runs
+    static ConfigurableApplicationContext start() throws IOException {
+        Path blobs = Files.createTempDirectory("imagehoster-bench-blobs");
+        return new SpringApplicationBuilder(ImageHosterApp.class)
+                .bannerMode(Banner.Mode.OFF)
+                .initializers(context -> context.getBeanFactory().addBeanPostProcessor(new QuietSqlPostProcessor()))
+                //Command line arguments take precedence over application.properties
+                .run("--spring.datasource.url=" + System.getProperty("spring.datasource.url", DEFAULT_URL),
+                        "--server.port=0",
+                        "--management.server.port=-1",
+                        "--imagehoster.storage.local.root=" + blobs,
+                        "--imagehoster.storage.migration.enabled=false",
+                        "--logging.level.root=WARN");
+    }
+
+    //persistence.xml turns on hibernate.show_sql, which would print every statement to the console while measuring
+    private static class QuietSqlPostProcessor implements BeanPostProcessor {
+        @Override
+        public Object postProcessBeforeInitialization(Object bean, String beanName) {
+            if (bean instanceof LocalContainerEntityManagerFactoryBean) {
+                ((LocalContainerEntityManagerFactoryBean) bean).getJpaPropertyMap().put("hibernate.show_sql", "false");
+            }
+            return bean;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package ImageHoster.benchmarks;
+
+import ImageHoster.model.Comment;
+import ImageHoster.model.Image;
+import ImageHoster.model.Tag;
+import ImageHoster.model.User;
+import ImageHoster.model.UserProfile;
+import ImageHoster.service.CommentService;
+import ImageHoster.service.ImageService;
+import ImageHoster.service.TagService;
+import ImageHoster.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+//Measures writing 'imageCount' images with three tags and two comments each, one image per transaction like the upload page and in bulk
+//One operation writes imageCount * 6 rows: the images, their rows of images_tags and their comments (the comment counts and search vectors are updated in place)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class BulkInsertBenchmark {
+
+    private static final int TAG_POOL = 100;
+
+    private static final int TAGS_PER_IMAGE = 3;
+
+    private static final int COMMENTS_PER_IMAGE = 2;
+
+    //Images per transaction of the bulk upload
+    private static final int CHUNK_SIZE = 500;
+
+    @Param({"10000"})
+    private int imageCount;
+
+    private ConfigurableApplicationContext context;
+
+    private ImageService imageService;
+
+    private CommentService commentService;
+
+    private User owner;
+
+    private List<Tag> tags;
+
+    @Setup
+    public void setUp() throws IOException {
+        context = BenchmarkContext.start();
+        imageService = context.getBean(ImageService.class);
+        commentService = context.getBean(CommentService.class);
+        owner = benchUser();
+
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < TAG_POOL; i++) {
+            names.add("bulk tag " + i);
+        }
+        tags = context.getBean(TagService.class).resolveTags(names);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    //Each image with its own transaction, and its comments with another one, as the pages write them
+    @Benchmark
+    public void oneByOne() {
+        for (int i = 0; i < imageCount; i++) {
+            Image image = newImage(i);
+            imageService.uploadImage(image);
+            commentService.createComments(newComments(image));
+        }
+    }
+
+    //ImageService.uploadImages() and CommentService.createComments() with CHUNK_SIZE images and their comments per transaction
+    @Benchmark
+    public void bulk() {
+        for (int start = 0; start < imageCount; start += CHUNK_SIZE) {
+            List<Image> images = new ArrayList<>();
+            for (int i = start; i < Math.min(start + CHUNK_SIZE, imageCount); i++) {
+                images.add(newImage(i));
+            }
+            imageService.uploadImages(images);
+
+            List<Comment> comments = new ArrayList<>();
+            for (Image image : images) {
+                comments.addAll(newComments(image));
+            }
+            commentService.createComments(comments);
+        }
+    }
+
+    private Image newImage(int i) {
+        Image image = new Image();
+        image.setTitle("bulk image " + i);
+        image.setDescription("Added by the bulk insert benchmark");
+        image.setDate(new Date());
+        image.setUser(owner);
+        Set<Tag> imageTags = new LinkedHashSet<>();
+        for (int j = 0; j < TAGS_PER_IMAGE; j++) {
+            imageTags.add(tags.get((i * TAGS_PER_IMAGE + j) % TAG_POOL));
+        }
+        image.setTags(imageTags);
+        return image;
+    }
+
+    private List<Comment> newComments(Image image) {
+        List<Comment> comments = new ArrayList<>();
+        for (int j = 0; j < COMMENTS_PER_IMAGE; j++) {
+            Comment comment = new Comment();
+            comment.setText("bulk comment " + j);
+            comment.setCreatedDate(LocalDate.now());
+            comment.setUser(owner);
+            comment.setImage(image);
+            comments.add(comment);
+        }
+        return comments;
+    }
+
+    //The user 'bench', which owns the images of the benchmarks; registered on the first run
+    private User benchUser() {
+        UserService userService = context.getBean(UserService.class);
+        JdbcTemplate jdbc = new JdbcTemplate(context.getBean(DataSource.class));
+        List<Integer> ids = jdbc.queryForList("SELECT id FROM users WHERE username = 'bench'", Integer.class);
+        if (ids.isEmpty()) {
+            User user = new User();
+            user.setUsername("bench");
+            user.setPassword("bench1@pass");
+            UserProfile profile = new UserProfile();
+            profile.setFullName("Benchmark User");
+            user.setProfile(profile);
+            userService.registerUser(user);
+            ids = jdbc.queryForList("SELECT id FROM users WHERE username = 'bench'", Integer.class);
+        }
+        User user = new User();
+        user.setId(ids.get(0));
+        user.setUsername("bench");
+        return user;
+    }
+}
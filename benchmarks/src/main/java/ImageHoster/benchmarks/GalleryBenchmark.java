@@ -0,0 +1,81 @@
+package ImageHoster.benchmarks;
+
+import ImageHoster.model.Image;
+import ImageHoster.model.ImagePage;
+import ImageHoster.model.User;
+import ImageHoster.model.UserProfile;
+import ImageHoster.service.ImageService;
+import ImageHoster.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Compares loading the whole gallery, as the home page did before it was paged, with loading its first page
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GalleryBenchmark {
+
+    //Number of images in the gallery; images are only ever added, so a smaller number after a larger one has no effect
+    @Param({"1000"})
+    private int imageCount;
+
+    private ConfigurableApplicationContext context;
+
+    private ImageService imageService;
+
+    @Setup
+    public void setUp() throws IOException {
+        context = BenchmarkContext.start();
+        imageService = context.getBean(ImageService.class);
+        seedImages(new JdbcTemplate(context.getBean(DataSource.class)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    //The former home page: every image as an entity, with its owner
+    @Benchmark
+    public List<Image> allImages() {
+        return imageService.getAllImages();
+    }
+
+    //The current home page: the newest images as ImageSummary, in the default page size
+    @Benchmark
+    public ImagePage firstPage() {
+        return imageService.getImagePage(null, null, null);
+    }
+
+    //Adds images owned by the user 'bench' until there are 'imageCount' of them, one minute apart
+    private void seedImages(JdbcTemplate jdbc) {
+        List<Integer> owner = jdbc.queryForList("SELECT id FROM users WHERE username = 'bench'", Integer.class);
+        if (owner.isEmpty()) {
+            User user = new User();
+            user.setUsername("bench");
+            user.setPassword("bench1@pass");
+            UserProfile profile = new UserProfile();
+            profile.setFullName("Benchmark User");
+            user.setProfile(profile);
+            context.getBean(UserService.class).registerUser(user);
+            owner = jdbc.queryForList("SELECT id FROM users WHERE username = 'bench'", Integer.class);
+        }
+
+        Integer existing = jdbc.queryForObject("SELECT count(*) FROM images WHERE user_id = ?", Integer.class, owner.get(0));
+        if (existing < imageCount) {
+            jdbc.update("INSERT INTO images (id, title, description, date, user_id, comment_count) " +
+                            "SELECT nextval('images_id_seq'), 'bench image ' || g, 'Added for the benchmarks', now() - g * interval '1 minute', ?, 0 " +
+                            "FROM generate_series(?, ?) g",
+                    owner.get(0), existing + 1, imageCount);
+        }
+    }
+}
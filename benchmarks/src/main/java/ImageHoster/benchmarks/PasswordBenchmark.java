@@ -0,0 +1,28 @@
+package ImageHoster.benchmarks;
+
+import ImageHoster.service.UserService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+//Measures the password check of the registration, which compiles its patterns on every call
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PasswordBenchmark {
+
+    //A valid password, and one without a special character which is rejected
+    @Param({"pass1@word", "password1"})
+    private String password;
+
+    //isPasswordValid() does not use the repository, so the service is used without the application
+    private final UserService userService = new UserService();
+
+    @Benchmark
+    public boolean isPasswordValid() {
+        return userService.isPasswordValid(password);
+    }
+}
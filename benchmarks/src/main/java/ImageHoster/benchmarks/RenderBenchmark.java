@@ -0,0 +1,88 @@
+package ImageHoster.benchmarks;
+
+import ImageHoster.model.ImagePage;
+import ImageHoster.model.ImageSummary;
+import ImageHoster.model.User;
+import ImageHoster.model.UserProfile;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.View;
+import org.thymeleaf.spring5.view.ThymeleafViewResolver;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//Measures the rendering of the gallery (images.html) with the given number of images, without the queries and without the page cache
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RenderBenchmark {
+
+    //The default page size, the largest page size and a gallery which is not paged
+    @Param({"20", "100", "1000"})
+    private int imageCount;
+
+    private ConfigurableApplicationContext context;
+
+    private View view;
+
+    private Map<String, Object> model;
+
+    private User user;
+
+    @Setup
+    public void setUp() throws Exception {
+        context = BenchmarkContext.start();
+        view = context.getBean(ThymeleafViewResolver.class).resolveViewName("images", Locale.ENGLISH);
+
+        //Images whose renditions are generated, which is the more expensive card
+        List<ImageSummary> images = new ArrayList<>(imageCount);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < imageCount; i++) {
+            images.add(new ImageSummary(imageCount - i, "Image " + i, new Date(now - i * 60000L),
+                    key('a', i), key('b', i), key('c', i)));
+        }
+        model = new HashMap<>();
+        model.put("images", images);
+        model.put("page", new ImagePage(images, "1538352000000_1", null));
+
+        user = new User();
+        user.setUsername("bench");
+        UserProfile profile = new UserProfile();
+        profile.setFullName("Benchmark User");
+        user.setProfile(profile);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String renderGallery() throws Exception {
+        WebApplicationContext webContext = (WebApplicationContext) context;
+        MockHttpServletRequest request = new MockHttpServletRequest(webContext.getServletContext(), "GET", "/images");
+        request.setAttribute(DispatcherServlet.WEB_APPLICATION_CONTEXT_ATTRIBUTE, webContext);
+        request.getSession().setAttribute("loggeduser", user);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        view.render(model, request, response);
+        return response.getContentAsString();
+    }
+
+    //A blob key of the same length as the real ones (64 hex digits)
+    private static String key(char prefix, int i) {
+        return prefix + String.format("%063x", i);
+    }
+}
@@ -0,0 +1,90 @@
+package ImageHoster.benchmarks;
+
+import ImageHoster.model.Tag;
+import ImageHoster.service.TagService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Measures the resolution of the tags of an upload (findOrCreateTags() of the ImageController), five tags per upload
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TagResolutionBenchmark {
+
+    private static final int TAGS_PER_UPLOAD = 5;
+
+    //More existing tags than imagehoster.tags.cache-size, so that cycling through them always misses the tag cache
+    private static final int UNCACHED_TAGS = 5000;
+
+    private ConfigurableApplicationContext context;
+
+    private TagService tagService;
+
+    private List<String> cachedNames;
+
+    private List<List<String>> uncachedNames;
+
+    private int nextUncached;
+
+    //Unique per run, so that the names of the new tags never exist yet
+    private final String run = Long.toString(System.currentTimeMillis(), 36);
+
+    private int nextNew;
+
+    @Setup
+    public void setUp() throws IOException {
+        context = BenchmarkContext.start();
+        tagService = context.getBean(TagService.class);
+
+        cachedNames = Arrays.asList("nature", "travel", "city", "night", "portrait");
+        tagService.resolveTags(cachedNames);
+
+        uncachedNames = new ArrayList<>();
+        for (int i = 0; i < UNCACHED_TAGS; i += TAGS_PER_UPLOAD) {
+            List<String> names = new ArrayList<>();
+            for (int j = i; j < i + TAGS_PER_UPLOAD; j++) {
+                names.add("bench tag " + j);
+            }
+            tagService.resolveTags(names);
+            uncachedNames.add(names);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    //Tags which are in the tag cache, the common case: no query at all
+    @Benchmark
+    public List<Tag> cachedTags() {
+        return tagService.resolveTags(cachedNames);
+    }
+
+    //Tags which exist but are not in the tag cache: one IN query
+    @Benchmark
+    public List<Tag> existingTags() {
+        List<String> names = uncachedNames.get(nextUncached);
+        nextUncached = (nextUncached + 1) % uncachedNames.size();
+        return tagService.resolveTags(names);
+    }
+
+    //Tags which do not exist yet: one IN query, one batch insert and one more IN query for the inserted tags
+    @Benchmark
+    public List<Tag> newTags() {
+        List<String> names = new ArrayList<>(TAGS_PER_UPLOAD);
+        for (int i = 0; i < TAGS_PER_UPLOAD; i++) {
+            names.add("new tag " + run + " " + nextNew++);
+        }
+        return tagService.resolveTags(names);
+    }
+}
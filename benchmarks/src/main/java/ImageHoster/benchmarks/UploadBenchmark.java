@@ -0,0 +1,70 @@
+package ImageHoster.benchmarks;
+
+import ImageHoster.storage.LocalFileBlobStore;
+import ImageHoster.storage.StoredBlob;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//Compares the two ways an uploaded file has been stored
+//Tomcat writes every uploaded file to disk first (spring.servlet.multipart.file-size-threshold=0), so both start from a file
+//Run with -prof gc to see the difference in allocation, which grows with the size of the file for the base64 encoding only
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class UploadBenchmark {
+
+    //Size of the uploaded file in bytes
+    @Param({"102400", "2097152"})
+    private int size;
+
+    private Path directory;
+
+    private Path upload;
+
+    private LocalFileBlobStore blobStore;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("imagehoster-bench-upload");
+        upload = directory.resolve("upload.bin");
+        byte[] content = new byte[size];
+        new Random(42).nextBytes(content);
+        try (OutputStream out = Files.newOutputStream(upload)) {
+            out.write(content);
+        }
+        blobStore = new LocalFileBlobStore(directory.resolve("blobs").toString());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    //The former convertUploadedFileToBase64(): the whole file is read on the heap and encoded to base64, which was then stored in the 'imageFile' column
+    //The database write is not included, so this is a lower bound of the former cost
+    @Benchmark
+    public String base64() throws IOException {
+        return Base64.getEncoder().encodeToString(Files.readAllBytes(upload));
+    }
+
+    //ImageService.storeImageData(): the file is streamed into the blob store, hashing it on the way
+    //The content is the same in every invocation, so the blob exists after the first one and only the temporary file is written, as for a re-upload
+    @Benchmark
+    public StoredBlob streamToBlobStore() throws IOException {
+        try (InputStream in = Files.newInputStream(upload)) {
+            return blobStore.put(in, Long.MAX_VALUE);
+        }
+    }
+}
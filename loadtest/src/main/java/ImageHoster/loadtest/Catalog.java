@@ -0,0 +1,84 @@
+package ImageHoster.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//The images and gallery pages the simulated users can visit, as found by crawling the gallery after seeding
+//The owner of an image is known from its title ("lt-u<user>-<n>"), the users only edit their own images
+class Catalog {
+
+    private static final Pattern OWNED_TITLE = Pattern.compile("^lt-u(\\d+)-.*");
+
+    static class KnownImage {
+
+        final int id;
+
+        final String title;
+
+        //Index of the simulated user owning the image, -1 for images not created by the load test
+        final int owner;
+
+        KnownImage(int id, String title) {
+            this.id = id;
+            this.title = title;
+            Matcher matcher = OWNED_TITLE.matcher(title);
+            this.owner = matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
+        }
+
+        String path() {
+            return "/images/" + id + "/" + Client.encode(title).replace("+", "%20");
+        }
+    }
+
+    private final List<KnownImage> images = new ArrayList<>();
+
+    //Paths of the gallery pages after the first one
+    private final List<String> pages = new ArrayList<>();
+
+    void addImage(int id, String title) {
+        images.add(new KnownImage(id, title));
+    }
+
+    void addPage(String path) {
+        pages.add(path);
+    }
+
+    int imageCount() {
+        return images.size();
+    }
+
+    int pageCount() {
+        return pages.size() + 1;
+    }
+
+    KnownImage randomImage(Random random) {
+        return images.isEmpty() ? null : images.get(random.nextInt(images.size()));
+    }
+
+    //Returns null if the user owns no image
+    KnownImage randomImageOf(int owner, Random random) {
+        List<KnownImage> owned = new ArrayList<>();
+        for (KnownImage image : images) {
+            if (image.owner == owner) {
+                owned.add(image);
+            }
+        }
+        return owned.isEmpty() ? null : owned.get(random.nextInt(owned.size()));
+    }
+
+    //Mostly the first page, like real visitors; otherwise one of the older pages
+    String randomPage(Random random) {
+        if (pages.isEmpty() || random.nextInt(10) < 7) {
+            return "/images";
+        }
+        return pages.get(random.nextInt(pages.size()));
+    }
+
+    List<KnownImage> images() {
+        return Collections.unmodifiableList(images);
+    }
+}
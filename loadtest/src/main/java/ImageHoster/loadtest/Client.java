@@ -0,0 +1,147 @@
+package ImageHoster.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+
+//HTTP client of one simulated user, which keeps the session cookie of the user
+//Redirects are not followed, a redirect is the successful answer to every form of the application
+class Client {
+
+    private final String baseUrl;
+
+    private final int timeoutMillis;
+
+    private String sessionCookie;
+
+    Client(String baseUrl, int timeoutMillis) {
+        this.baseUrl = baseUrl;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    //The answer to a request, the body is always read completely like a browser would
+    static class Response {
+
+        final int status;
+
+        final String location;
+
+        final String body;
+
+        Response(int status, String location, String body) {
+            this.status = status;
+            this.location = location;
+            this.body = body;
+        }
+
+        boolean isOk() {
+            return status == 200;
+        }
+
+        boolean isRedirect() {
+            return status == 302 || status == 303;
+        }
+    }
+
+    Response get(String path) throws IOException {
+        return send(open(path, "GET"));
+    }
+
+    Response postForm(String path, Map<String, String> fields) throws IOException {
+        StringBuilder form = new StringBuilder();
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            if (form.length() > 0) {
+                form.append('&');
+            }
+            form.append(encode(field.getKey())).append('=').append(encode(field.getValue()));
+        }
+        byte[] content = form.toString().getBytes(StandardCharsets.UTF_8);
+
+        HttpURLConnection connection = open(path, "POST");
+        connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+        connection.setFixedLengthStreamingMode(content.length);
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(content);
+        }
+        return send(connection);
+    }
+
+    //Posts the fields and the file as multipart/form-data, like the upload and edit forms; an empty file is sent as "no file chosen"
+    Response postMultipart(String path, Map<String, String> fields, String fileName, byte[] file) throws IOException {
+        String boundary = "----loadtest" + UUID.randomUUID().toString().replace("-", "");
+        ByteArrayOutputStream content = new ByteArrayOutputStream(file.length + 1024);
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            write(content, "--" + boundary + "\r\nContent-Disposition: form-data; name=\"" + field.getKey() + "\"\r\n\r\n"
+                    + field.getValue() + "\r\n");
+        }
+        write(content, "--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\""
+                + (file.length > 0 ? fileName : "") + "\"\r\nContent-Type: " + (file.length > 0 ? "image/jpeg" : "application/octet-stream") + "\r\n\r\n");
+        content.write(file);
+        write(content, "\r\n--" + boundary + "--\r\n");
+
+        HttpURLConnection connection = open(path, "POST");
+        connection.setRequestProperty("Content-Type", "multipart/form-data; boundary=" + boundary);
+        connection.setFixedLengthStreamingMode(content.size());
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            content.writeTo(out);
+        }
+        return send(connection);
+    }
+
+    private HttpURLConnection open(String path, String method) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setInstanceFollowRedirects(false);
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        connection.setUseCaches(false);
+        if (sessionCookie != null) {
+            connection.setRequestProperty("Cookie", sessionCookie);
+        }
+        return connection;
+    }
+
+    private Response send(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        String setCookie = connection.getHeaderField("Set-Cookie");
+        if (setCookie != null && setCookie.startsWith("JSESSIONID=")) {
+            sessionCookie = setCookie.substring(0, setCookie.indexOf(';') > 0 ? setCookie.indexOf(';') : setCookie.length());
+        }
+
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (in != null) {
+            try (InputStream stream = in) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = stream.read(buffer)) != -1) {
+                    body.write(buffer, 0, read);
+                }
+            }
+        }
+        return new Response(status, connection.getHeaderField("Location"), body.toString("UTF-8"));
+    }
+
+    private static void write(ByteArrayOutputStream out, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
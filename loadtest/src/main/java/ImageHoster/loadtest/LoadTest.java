@@ -0,0 +1,238 @@
+package ImageHoster.loadtest;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+//Replays a mix of user traffic against a running application and reports the latency percentiles, throughput and server heap and GC per scenario
+//First the users, images and comments are seeded, then every scenario runs for a warmup and a measured period with a fixed number of concurrent users
+//Every simulated user waits for the answer before its next operation (closed model), so the throughput is what the application sustains for that many users
+//The random choices are made from a fixed seed, so two runs against the same build and an empty database do the same work
+public class LoadTest {
+
+    private static final String USAGE = String.join("\n",
+            "Usage: java -jar target/loadtest.jar [options]",
+            "  --url <url>              application (default http://localhost:8080)",
+            "  --management-url <url>   metrics endpoint for the heap and GC figures, 'none' to skip (default http://127.0.0.1:8081)",
+            "  --users <n>              users to register and log in (default 20)",
+            "  --images <n>             images to upload before the scenarios (default 200)",
+            "  --comments <n>           comments to post before the scenarios (default 400)",
+            "  --max-pages <n>          gallery pages to crawl for the images to visit (default 50)",
+            "  --scenarios <a,b>        scenarios to run, in order (default production)",
+            "  --config <file>          scenario definitions (default: the built-in scenarios.properties)",
+            "  --concurrency <n>        concurrent users during the scenarios (default 16)",
+            "  --warmup <seconds>       unmeasured period before each scenario (default 10)",
+            "  --duration <seconds>     measured period of each scenario (default 60)",
+            "  --think-ms <ms>          pause of a user between two operations (default 0)",
+            "  --timeout-ms <ms>        connect and read timeout of a request (default 30000)",
+            "  --seed <n>               seed of the random choices (default 42)",
+            "  --report <file>          also write the results as CSV, e.g. to compare builds");
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        if (options.containsKey("help")) {
+            System.out.println(USAGE);
+            return;
+        }
+        String url = options.getOrDefault("url", "http://localhost:8080");
+        String managementUrl = options.getOrDefault("management-url", "http://127.0.0.1:8081");
+        int users = Integer.parseInt(options.getOrDefault("users", "20"));
+        int images = Integer.parseInt(options.getOrDefault("images", "200"));
+        int comments = Integer.parseInt(options.getOrDefault("comments", "400"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "16"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "60"));
+        int thinkMillis = Integer.parseInt(options.getOrDefault("think-ms", "0"));
+        int timeoutMillis = Integer.parseInt(options.getOrDefault("timeout-ms", "30000"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        int maxPages = Integer.parseInt(options.getOrDefault("max-pages", "50"));
+        List<Scenario> scenarios = loadScenarios(options.get("config"), options.getOrDefault("scenarios", "production"));
+
+        Random random = new Random(seed);
+        TestImages testImages = new TestImages(random);
+        Seeder seeder = new Seeder(url, timeoutMillis, random);
+
+        System.out.println("Seeding " + users + " users, " + images + " images (" + testImages.sizes() + ") and " + comments + " comments at " + url);
+        List<SimulatedUser> simulatedUsers = seeder.logInUsers(users);
+        seeder.uploadImages(simulatedUsers, images, testImages);
+        Catalog catalog = seeder.crawl(simulatedUsers.get(0), maxPages);
+        seeder.comment(simulatedUsers, catalog, comments);
+        System.out.println("Found " + catalog.imageCount() + " images on " + catalog.pageCount() + " gallery pages");
+
+        ServerMonitor monitor = new ServerMonitor("none".equals(managementUrl) ? null : managementUrl, timeoutMillis);
+        List<String[]> report = new ArrayList<>();
+        for (int i = 0; i < scenarios.size(); i++) {
+            Scenario scenario = scenarios.get(i);
+            System.out.println();
+            System.out.println("Scenario " + scenario + ": " + concurrency + " users, " + warmupSeconds + " s warmup, " + durationSeconds + " s measured");
+            Stats stats = run(scenario, simulatedUsers, catalog, testImages, concurrency, warmupSeconds, durationSeconds, thinkMillis,
+                    seed * 31 + i, monitor);
+            print(scenario, stats.summarize(durationSeconds), monitor.summary(), report);
+        }
+
+        if (options.containsKey("report")) {
+            writeReport(options.get("report"), report);
+            System.out.println();
+            System.out.println("Results written to " + options.get("report"));
+        }
+    }
+
+    private static Stats run(Scenario scenario, List<SimulatedUser> users, Catalog catalog, TestImages images, int concurrency,
+                             int warmupSeconds, int durationSeconds, int thinkMillis, long seed, ServerMonitor monitor)
+            throws InterruptedException {
+        Stats stats = new Stats();
+        long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        for (int t = 0; t < concurrency; t++) {
+            SimulatedUser user = users.get(t % users.size());
+            Random random = new Random(seed * 1000 + t);
+            workers.execute(() -> {
+                while (System.nanoTime() < end) {
+                    Operation operation = scenario.next(random);
+                    long start = System.nanoTime();
+                    boolean ok;
+                    try {
+                        ok = perform(operation, user, catalog, images, random);
+                    } catch (IOException e) {
+                        ok = false;
+                    } catch (EditNotPossible e) {
+                        continue;
+                    }
+                    long finished = System.nanoTime();
+                    if (start >= measureFrom && finished <= end) {
+                        stats.record(operation, finished - start, ok);
+                    }
+                    if (thinkMillis > 0) {
+                        try {
+                            Thread.sleep(thinkMillis);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                }
+            });
+        }
+        workers.shutdown();
+
+        long untilMeasuring = measureFrom - System.nanoTime();
+        if (untilMeasuring > 0) {
+            TimeUnit.NANOSECONDS.sleep(untilMeasuring);
+        }
+        monitor.start();
+        workers.awaitTermination(durationSeconds + 600, TimeUnit.SECONDS);
+        monitor.stop();
+        return stats;
+    }
+
+    //Thrown for an edit by a user who owns no image, the operation is skipped and another one picked
+    private static class EditNotPossible extends RuntimeException {
+    }
+
+    private static boolean perform(Operation operation, SimulatedUser user, Catalog catalog, TestImages images, Random random)
+            throws IOException {
+        switch (operation) {
+            case GALLERY:
+                return user.viewGallery(catalog, random);
+            case DETAIL:
+                return user.viewImage(catalog, random);
+            case UPLOAD:
+                return user.uploadDuringRun(images, random);
+            case EDIT:
+                Boolean edited = user.edit(catalog, random);
+                if (edited == null) {
+                    throw new EditNotPossible();
+                }
+                return edited;
+            case COMMENT:
+                return user.comment(catalog, random);
+            default:
+                throw new IllegalArgumentException(operation.name());
+        }
+    }
+
+    private static void print(Scenario scenario, List<String[]> rows, double[] server, List<String[]> report) {
+        String format = "%-10s %8s %7s %9s %9s %9s %9s %9s%n";
+        System.out.printf(format, "operation", "count", "errors", "ops/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        for (String[] row : rows) {
+            System.out.printf(format, (Object[]) row);
+            String[] line = new String[row.length + 1];
+            line[0] = scenario.name;
+            System.arraycopy(row, 0, line, 1, row.length);
+            report.add(line);
+        }
+        if (server == null) {
+            System.out.println("Server heap and GC: not available");
+        } else {
+            System.out.println("Server heap used: " + Stats.format(server[0]) + " MB average, " + Stats.format(server[1]) + " MB max; GC: "
+                    + (long) server[2] + " pauses, " + Stats.format(server[3]) + " ms total");
+            report.add(new String[]{scenario.name, "server", "", "", "", "", "", "", "",
+                    Stats.format(server[0]), Stats.format(server[1]), Long.toString((long) server[2]), Stats.format(server[3])});
+        }
+    }
+
+    private static void writeReport(String file, List<String[]> rows) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8))) {
+            out.println("scenario,operation,count,errors,ops_per_s,p50_ms,p90_ms,p99_ms,max_ms,heap_avg_mb,heap_max_mb,gc_pauses,gc_pause_ms");
+            for (String[] row : rows) {
+                StringBuilder line = new StringBuilder();
+                for (int i = 0; i < 13; i++) {
+                    if (i > 0) {
+                        line.append(',');
+                    }
+                    line.append(i < row.length ? row[i] : "");
+                }
+                out.println(line);
+            }
+        }
+    }
+
+    private static List<Scenario> loadScenarios(String config, String names) throws IOException {
+        Properties definitions = new Properties();
+        try (InputStream in = config != null ? new FileInputStream(config) : LoadTest.class.getResourceAsStream("/scenarios.properties")) {
+            definitions.load(in);
+        }
+        List<Scenario> scenarios = new ArrayList<>();
+        for (String name : names.split(",")) {
+            String mix = definitions.getProperty(name.trim());
+            if (mix == null) {
+                throw new IllegalArgumentException("Unknown scenario '" + name.trim() + "', known are " + definitions.stringPropertyNames());
+            }
+            scenarios.add(new Scenario(name.trim(), mix));
+        }
+        return scenarios;
+    }
+
+    //"--name value" pairs; "--help" has no value
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument '" + args[i] + "'\n" + USAGE);
+            }
+            String name = args[i].substring(2);
+            if (name.equals("help")) {
+                options.put(name, "");
+            } else if (i + 1 < args.length) {
+                options.put(name, args[++i]);
+            } else {
+                throw new IllegalArgumentException("Missing value of --" + name + "\n" + USAGE);
+            }
+        }
+        return options;
+    }
+}
@@ -0,0 +1,28 @@
+package ImageHoster.loadtest;
+
+//The operations of a simulated user, named as in the scenarios
+enum Operation {
+
+    //A page of the gallery, mostly the first one
+    GALLERY,
+
+    //The page of an image
+    DETAIL,
+
+    //A new image with a few tags
+    UPLOAD,
+
+    //The edit form of an own image, followed by the update of its description; measured together
+    EDIT,
+
+    //A comment on an image
+    COMMENT;
+
+    String label() {
+        return name().toLowerCase();
+    }
+
+    static Operation of(String label) {
+        return valueOf(label.trim().toUpperCase());
+    }
+}
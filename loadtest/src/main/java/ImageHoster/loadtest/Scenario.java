@@ -0,0 +1,56 @@
+package ImageHoster.loadtest;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+//A weighted mix of operations, e.g. "gallery:45,detail:38,comment:10,upload:4,edit:3"
+class Scenario {
+
+    final String name;
+
+    private final Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+
+    private final int totalWeight;
+
+    Scenario(String name, String mix) {
+        this.name = name;
+        int total = 0;
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid mix of scenario '" + name + "': " + mix);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            weights.put(Operation.of(parts[0]), weight);
+            total += weight;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("Scenario '" + name + "' has no operations");
+        }
+        totalWeight = total;
+    }
+
+    Operation next(Random random) {
+        int pick = random.nextInt(totalWeight);
+        for (Map.Entry<Operation, Integer> weight : weights.entrySet()) {
+            pick -= weight.getValue();
+            if (pick < 0) {
+                return weight.getKey();
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder mix = new StringBuilder();
+        for (Map.Entry<Operation, Integer> weight : weights.entrySet()) {
+            if (mix.length() > 0) {
+                mix.append(',');
+            }
+            mix.append(weight.getKey().label()).append(':').append(weight.getValue());
+        }
+        return name + " (" + mix + ")";
+    }
+}
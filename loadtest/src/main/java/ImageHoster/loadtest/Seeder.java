@@ -0,0 +1,89 @@
+package ImageHoster.loadtest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//Creates the users, images and comments of the load test through the pages of the application, and finds the images to visit by crawling the gallery
+//Users are registered only once (lt-user-<n>), images and comments are added on every run; start from an empty database to compare builds
+class Seeder {
+
+    //The links of the cards of the gallery, the links of the image files (".../raw") are in src attributes
+    private static final Pattern IMAGE_LINK = Pattern.compile("href=\"/images/(\\d+)/([^\"/]+)\"");
+
+    private static final Pattern NEXT_PAGE = Pattern.compile("href=\"(/images\\?after=[^\"]+)\"");
+
+    private final String baseUrl;
+
+    private final int timeoutMillis;
+
+    private final Random random;
+
+    Seeder(String baseUrl, int timeoutMillis, Random random) {
+        this.baseUrl = baseUrl;
+        this.timeoutMillis = timeoutMillis;
+        this.random = random;
+    }
+
+    List<SimulatedUser> logInUsers(int count) throws IOException {
+        List<SimulatedUser> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            SimulatedUser user = new SimulatedUser(i, new Client(baseUrl, timeoutMillis));
+            user.logIn();
+            users.add(user);
+        }
+        return users;
+    }
+
+    //Every user uploads the same share of the images
+    void uploadImages(List<SimulatedUser> users, int count, TestImages images) throws IOException {
+        for (int i = 0; i < count; i++) {
+            SimulatedUser user = users.get(i % users.size());
+            if (!user.upload("lt-u" + user.index + "-s" + i, images, random)) {
+                throw new IOException("Could not upload image " + i + " as " + user.username);
+            }
+        }
+    }
+
+    //The comments are spread over the images at random, so that some images have many comments and most have a few
+    void comment(List<SimulatedUser> users, Catalog catalog, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            if (!users.get(random.nextInt(users.size())).comment(catalog, random)) {
+                throw new IOException("Could not post comment " + i);
+            }
+        }
+    }
+
+    //Follows the "older images" links from the first page of the gallery, collecting the images and the pages
+    Catalog crawl(SimulatedUser user, int maxPages) throws IOException {
+        Catalog catalog = new Catalog();
+        String page = "/images";
+        for (int pages = 0; page != null && pages < maxPages; pages++) {
+            Client.Response response = user.client.get(page);
+            if (!response.isOk()) {
+                throw new IOException("Could not crawl " + page + " (HTTP " + response.status + ")");
+            }
+            Matcher images = IMAGE_LINK.matcher(response.body);
+            while (images.find()) {
+                catalog.addImage(Integer.parseInt(images.group(1)), decode(images.group(2)));
+            }
+            Matcher next = NEXT_PAGE.matcher(response.body);
+            page = next.find() ? next.group(1).replace("&amp;", "&") : null;
+            if (page != null) {
+                catalog.addPage(page);
+            }
+        }
+        return catalog;
+    }
+
+    private static String decode(String title) {
+        try {
+            return java.net.URLDecoder.decode(title, "UTF-8");
+        } catch (java.io.UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package ImageHoster.loadtest;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//Reads the heap and garbage collection figures of the application from its metrics endpoint (management port, see application.properties)
+//The heap is sampled every second while a scenario runs; the GC figures are compared before and after the scenario
+//Without a reachable metrics endpoint the figures are reported as not available
+class ServerMonitor {
+
+    private static final Pattern MEASUREMENT = Pattern.compile("\"statistic\"\\s*:\\s*\"(\\w+)\"\\s*,\\s*\"value\"\\s*:\\s*([-0-9.Ee+]+)");
+
+    private final Client client;
+
+    private volatile boolean sampling;
+
+    private Thread sampler;
+
+    private long heapSamples;
+
+    private double heapSum;
+
+    private double heapMax;
+
+    private double[] gcAtStart;
+
+    private double[] gcAtEnd;
+
+    ServerMonitor(String managementUrl, int timeoutMillis) {
+        this.client = managementUrl != null ? new Client(managementUrl, timeoutMillis) : null;
+    }
+
+    void start() {
+        if (client == null) {
+            return;
+        }
+        heapSamples = 0;
+        heapSum = 0;
+        heapMax = 0;
+        gcAtStart = gcPauses();
+        sampling = true;
+        sampler = new Thread(() -> {
+            while (sampling) {
+                double heap = measurement("/actuator/metrics/jvm.memory.used?tag=area:heap", "VALUE");
+                if (heap >= 0) {
+                    synchronized (this) {
+                        heapSamples++;
+                        heapSum += heap;
+                        heapMax = Math.max(heapMax, heap);
+                    }
+                }
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "server-monitor");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    void stop() throws InterruptedException {
+        if (client == null) {
+            return;
+        }
+        sampling = false;
+        sampler.interrupt();
+        sampler.join();
+        gcAtEnd = gcPauses();
+    }
+
+    //[average heap MB, maximum heap MB, GC pauses, GC pause ms], or null if nothing could be read
+    synchronized double[] summary() {
+        if (client == null || heapSamples == 0 || gcAtStart == null || gcAtEnd == null) {
+            return null;
+        }
+        return new double[]{heapSum / heapSamples / (1 << 20), heapMax / (1 << 20),
+                gcAtEnd[0] - gcAtStart[0], (gcAtEnd[1] - gcAtStart[1]) * 1000};
+    }
+
+    //[count, total seconds] of the GC pauses so far, or null if not available
+    private double[] gcPauses() {
+        double count = measurement("/actuator/metrics/jvm.gc.pause", "COUNT");
+        double total = measurement("/actuator/metrics/jvm.gc.pause", "TOTAL_TIME");
+        return count >= 0 && total >= 0 ? new double[]{count, total} : null;
+    }
+
+    //Returns -1 if the metric cannot be read
+    private double measurement(String path, String statistic) {
+        try {
+            Client.Response response = client.get(path);
+            if (!response.isOk()) {
+                return -1;
+            }
+            Matcher matcher = MEASUREMENT.matcher(response.body);
+            while (matcher.find()) {
+                if (matcher.group(1).equals(statistic)) {
+                    return Double.parseDouble(matcher.group(2));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            //Reported as not available
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,123 @@
+package ImageHoster.loadtest;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//A logged in user of the load test, which performs the operations through the same pages and forms as a browser
+//Every operation returns whether the application answered it as expected
+class SimulatedUser {
+
+    //Vocabulary of the tags, so that tags are shared between images like on the real site
+    static final String[] TAGS = {"nature", "travel", "city", "night", "portrait", "food", "beach", "mountains", "street", "family",
+            "friends", "sunset", "winter", "summer", "architecture", "animals", "cars", "sports", "music", "art"};
+
+    //Numbers the images uploaded during the runs, shared by all users
+    private static final AtomicInteger uploads = new AtomicInteger();
+
+    final int index;
+
+    final String username;
+
+    final Client client;
+
+    SimulatedUser(int index, Client client) {
+        this.index = index;
+        this.username = "lt-user-" + index;
+        this.client = client;
+    }
+
+    String password() {
+        return "lt-pass-1@" + index;
+    }
+
+    //Logs in, registering the user first if it does not exist yet
+    //A successful login redirects to the gallery, a failed one shows the login page again
+    void logIn() throws IOException {
+        if (tryLogIn()) {
+            return;
+        }
+        Map<String, String> registration = new LinkedHashMap<>();
+        registration.put("username", username);
+        registration.put("password", password());
+        registration.put("profile.fullName", "Load Test User " + index);
+        registration.put("profile.emailAddress", username + "@example.com");
+        registration.put("profile.mobileNumber", String.format("9%09d", index));
+        Client.Response registered = client.postForm("/users/registration", registration);
+        if (!registered.isRedirect() || !tryLogIn()) {
+            throw new IOException("Could not register and log in " + username + " (HTTP " + registered.status + ")");
+        }
+    }
+
+    private boolean tryLogIn() throws IOException {
+        Map<String, String> login = new LinkedHashMap<>();
+        login.put("username", username);
+        login.put("password", password());
+        return client.postForm("/users/login", login).isRedirect();
+    }
+
+    boolean viewGallery(Catalog catalog, Random random) throws IOException {
+        return client.get(catalog.randomPage(random)).isOk();
+    }
+
+    boolean viewImage(Catalog catalog, Random random) throws IOException {
+        Catalog.KnownImage image = catalog.randomImage(random);
+        return image != null && client.get(image.path()).isOk();
+    }
+
+    boolean upload(String title, TestImages images, Random random) throws IOException {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("title", title);
+        fields.put("description", "Uploaded by " + username + " during the load test");
+        fields.put("tags", randomTags(random));
+        return client.postMultipart("/images/upload", fields, title + ".jpg", images.pick(random)).isRedirect();
+    }
+
+    boolean uploadDuringRun(TestImages images, Random random) throws IOException {
+        return upload("lt-u" + index + "-r" + uploads.incrementAndGet(), images, random);
+    }
+
+    //Opens the edit form of one of the own images and saves it with a new description, keeping the file
+    //Returns null if the user owns no image, so that the caller can do something else
+    Boolean edit(Catalog catalog, Random random) throws IOException {
+        Catalog.KnownImage image = catalog.randomImageOf(index, random);
+        if (image == null) {
+            return null;
+        }
+        if (!client.get("/editImage?imageId=" + image.id).isOk()) {
+            return false;
+        }
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("_method", "put");
+        fields.put("title", image.title);
+        fields.put("description", "Edited by " + username + " at " + System.currentTimeMillis());
+        fields.put("tags", randomTags(random));
+        return client.postMultipart("/editImage?imageId=" + image.id, fields, "", new byte[0]).isRedirect();
+    }
+
+    boolean comment(Catalog catalog, Random random) throws IOException {
+        Catalog.KnownImage image = catalog.randomImage(random);
+        if (image == null) {
+            return false;
+        }
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("comment", "Comment of " + username + " number " + random.nextInt(1000000));
+        return client.postForm("/image/" + image.path().substring("/images/".length()) + "/comments", fields).isRedirect();
+    }
+
+    //One to four distinct tags
+    private static String randomTags(Random random) {
+        StringBuilder tags = new StringBuilder();
+        int count = 1 + random.nextInt(4);
+        int start = random.nextInt(TAGS.length);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                tags.append(',');
+            }
+            tags.append(TAGS[(start + i * 7) % TAGS.length]);
+        }
+        return tags.toString();
+    }
+}
@@ -0,0 +1,66 @@
+package ImageHoster.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+//Latencies and errors of the operations of one scenario
+//Every latency is kept, so that the percentiles are exact; a run of a few minutes records well below a million operations
+class Stats {
+
+    private final Map<Operation, List<Long>> latencies = new EnumMap<>(Operation.class);
+
+    private final Map<Operation, Integer> errors = new EnumMap<>(Operation.class);
+
+    synchronized void record(Operation operation, long nanos, boolean ok) {
+        latencies.computeIfAbsent(operation, o -> new ArrayList<>()).add(nanos);
+        if (!ok) {
+            errors.merge(operation, 1, Integer::sum);
+        }
+    }
+
+    //One line per operation: count, errors, throughput, percentiles and maximum of the latency
+    synchronized List<String[]> summarize(double seconds) {
+        List<String[]> rows = new ArrayList<>();
+        long total = 0;
+        int totalErrors = 0;
+        List<Long> all = new ArrayList<>();
+        for (Map.Entry<Operation, List<Long>> entry : latencies.entrySet()) {
+            List<Long> sorted = new ArrayList<>(entry.getValue());
+            Collections.sort(sorted);
+            int operationErrors = errors.getOrDefault(entry.getKey(), 0);
+            rows.add(row(entry.getKey().label(), sorted, operationErrors, seconds));
+            total += sorted.size();
+            totalErrors += operationErrors;
+            all.addAll(sorted);
+        }
+        if (total > 0) {
+            Collections.sort(all);
+            rows.add(row("all", all, totalErrors, seconds));
+        }
+        return rows;
+    }
+
+    private static String[] row(String label, List<Long> sorted, int errors, double seconds) {
+        return new String[]{label, Integer.toString(sorted.size()), Integer.toString(errors),
+                format(sorted.size() / seconds), millis(percentile(sorted, 50)), millis(percentile(sorted, 90)),
+                millis(percentile(sorted, 99)), millis(sorted.get(sorted.size() - 1))};
+    }
+
+    //Nearest-rank percentile
+    private static long percentile(List<Long> sorted, int percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+
+    private static String millis(long nanos) {
+        return format(nanos / 1e6);
+    }
+
+    static String format(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+}
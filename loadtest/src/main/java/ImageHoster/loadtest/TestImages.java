@@ -0,0 +1,59 @@
+package ImageHoster.loadtest;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+//JPEG files for the uploads, generated once from the random seed so that every run uploads the same bytes
+//Real photos are needed for the renditions to be generated, random bytes would not decode; the sizes are a phone picture scaled down to a few typical upload sizes
+class TestImages {
+
+    private final byte[] small;
+
+    private final byte[] medium;
+
+    private final byte[] large;
+
+    TestImages(Random random) throws IOException {
+        small = generate(random, 640, 480);
+        medium = generate(random, 1280, 960);
+        large = generate(random, 2560, 1920);
+    }
+
+    //60% small, 30% medium and 10% large uploads
+    byte[] pick(Random random) {
+        int pick = random.nextInt(10);
+        return pick < 6 ? small : pick < 9 ? medium : large;
+    }
+
+    String sizes() {
+        return small.length / 1024 + " / " + medium.length / 1024 + " / " + large.length / 1024 + " KB";
+    }
+
+    //Overlapping translucent shapes over a gradient, which compresses about as well as a photo
+    private static byte[] generate(Random random, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        for (int y = 0; y < height; y++) {
+            graphics.setColor(new Color(40 + 150 * y / height, 90, 200 - 150 * y / height));
+            graphics.drawLine(0, y, width, y);
+        }
+        for (int i = 0; i < 400; i++) {
+            graphics.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256), 90));
+            int size = 10 + random.nextInt(width / 6);
+            graphics.fillOval(random.nextInt(width), random.nextInt(height), size, size);
+        }
+        for (int i = 0; i < width * height / 20; i++) {
+            image.setRGB(random.nextInt(width), random.nextInt(height), random.nextInt(0xffffff));
+        }
+        graphics.dispose();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        return out.toByteArray();
+    }
+}
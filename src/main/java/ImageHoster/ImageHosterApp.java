@@ -2,10 +2,13 @@ package ImageHoster;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 
 // Beginning of everything
 @SpringBootApplication
+//Enables the background jobs (e.g. the migration of the image data to the blob store)
+@EnableScheduling
 public class ImageHosterApp {
     public static void main(String[] args) {
         SpringApplication.run(ImageHosterApp.class, args);
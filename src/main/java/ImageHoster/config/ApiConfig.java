@@ -0,0 +1,39 @@
+package ImageHoster.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Executors;
+
+@Configuration
+public class ApiConfig {
+
+    @Value("${imagehoster.api.db-threads}")
+    private int dbThreads;
+
+    @Value("${imagehoster.api.write-threads}")
+    private int writeThreads;
+
+    //Threads on which the JSON API (ImageApiController) reads from the database
+    //JDBC blocks, so the reads are moved off the request threads, which are released while a request waits; the pool size bounds the connections the API holds at once
+    @Bean(destroyMethod = "dispose")
+    public Scheduler apiScheduler() {
+        return Schedulers.fromExecutorService(Executors.newFixedThreadPool(dbThreads, new CustomizableThreadFactory("api-db-")));
+    }
+
+    //Threads on which Spring MVC writes the items of a streamed response (Flux) to the client, registered in WebMvcConfig
+    //A write blocks while the client is slow to read, so these are kept apart from the database reads
+    @Bean
+    public ThreadPoolTaskExecutor apiWriteExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(writeThreads);
+        executor.setMaxPoolSize(writeThreads);
+        executor.setThreadNamePrefix("api-write-");
+        return executor;
+    }
+}
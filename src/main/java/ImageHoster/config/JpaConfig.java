@@ -1,32 +1,54 @@
 package ImageHoster.config;
 
+import ImageHoster.metrics.QueryCountingInspector;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.jpa.HibernateMetrics;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 import javax.persistence.EntityManagerFactory;
 import javax.sql.DataSource;
+import java.util.Collections;
 
 @Configuration
+@EnableTransactionManagement
 public class JpaConfig {
 
+    //The persistence unit is defined in persistence.xml, its connections come from the pooled DataSource below
+    //Every SQL statement is counted for the metrics of the request it belongs to
     @Bean
-    public EntityManagerFactory entityManagerFactory() {
+    public LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
         LocalContainerEntityManagerFactoryBean emfb = new LocalContainerEntityManagerFactoryBean();
         emfb.setPersistenceXmlLocation("classpath:META-INF/persistence.xml");
-        emfb.afterPropertiesSet();
-        return emfb.getObject();
+        emfb.setDataSource(dataSource);
+        emfb.getJpaPropertyMap().put(AvailableSettings.STATEMENT_INSPECTOR, new QueryCountingInspector());
+        return emfb;
     }
 
     //Details for the database connection
+    //The connections are pooled by HikariCP, the URL and credentials are taken from spring.datasource.* and the pool settings from spring.datasource.hikari.*
     @Bean
-    public DataSource dataSource() {
-        DriverManagerDataSource ds = new DriverManagerDataSource();
-        ds.setDriverClassName("org.postgresql.Driver");
-        ds.setUrl("jdbc:postgresql://localhost:5432/imageHoster");
-        ds.setUsername("postgres");
-        ds.setPassword("password");
-        return ds;
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    //Transactions of the service layer (@Transactional)
+    @Bean
+    public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+        return new JpaTransactionManager(entityManagerFactory);
+    }
+
+    //Publishes the Hibernate statistics as metrics (hibernate.*), among them the hits and misses of every second-level cache region and of the query cache
+    @Bean
+    public HibernateMetrics hibernateMetrics(EntityManagerFactory entityManagerFactory) {
+        return new HibernateMetrics(entityManagerFactory, "imageHoster", Collections.emptyList());
     }
 }
\ No newline at end of file
@@ -0,0 +1,56 @@
+package ImageHoster.config;
+
+import org.apache.catalina.Lifecycle;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//Opt-in mode (imagehoster.server.virtual-threads=true) in which Tomcat runs every request on a virtual thread of its own instead of on its pool of server.tomcat.max-threads threads
+//A request blocked on JDBC or on the upload stream then only holds a virtual thread, the number of concurrent requests is bounded by server.tomcat.max-connections
+//The work on the database stays bounded by the connection pool (spring.datasource.hikari.maximum-pool-size), requests wait for a connection up to connection-timeout
+//Virtual threads need JDK 21 or later, the application is built for Java 8, so the executor is looked up by reflection; on an older JDK the platform thread pool is kept
+//On JDK 21 Spring 5.0 needs --add-opens java.base/java.lang=ALL-UNNAMED to create its proxies, see loadtest/README.md for the measurements
+@Configuration
+@ConditionalOnProperty(name = "imagehoster.server.virtual-threads", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> virtualThreadCustomizer() {
+        return factory -> factory.addConnectorCustomizers(connector -> {
+            ExecutorService executor = newVirtualThreadPerTaskExecutor();
+            ProtocolHandler handler = connector.getProtocolHandler();
+            if (executor == null || !(handler instanceof AbstractProtocol)) {
+                log.warn("Virtual threads are not available on Java {}, requests run on the platform thread pool", System.getProperty("java.version"));
+                return;
+            }
+            //Tomcat does not shut down an executor it was given, it is shut down with the connector
+            ((AbstractProtocol<?>) handler).setExecutor(executor);
+            connector.addLifecycleListener(event -> {
+                if (Lifecycle.AFTER_STOP_EVENT.equals(event.getType())) {
+                    executor.shutdown();
+                }
+            });
+            log.info("Requests run on virtual threads");
+        });
+    }
+
+    //Executors.newVirtualThreadPerTaskExecutor() of JDK 21, or null if it does not exist
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
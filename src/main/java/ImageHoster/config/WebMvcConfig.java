@@ -0,0 +1,31 @@
+package ImageHoster.config;
+
+import ImageHoster.metrics.ViewRenderInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private ViewRenderInterceptor viewRenderInterceptor;
+
+    @Autowired
+    private ThreadPoolTaskExecutor apiWriteExecutor;
+
+    //Times the rendering of every view
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(viewRenderInterceptor);
+    }
+
+    //The streamed responses of the JSON API are written on a bounded pool instead of a new thread per item
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(apiWriteExecutor);
+    }
+}
@@ -0,0 +1,75 @@
+package ImageHoster.controller;
+
+import ImageHoster.model.Comment;
+import ImageHoster.model.CommentPage;
+import ImageHoster.model.Image;
+import ImageHoster.model.User;
+import ImageHoster.service.CommentQueue;
+import ImageHoster.service.CommentService;
+import ImageHoster.service.ImageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.servlet.http.HttpSession;
+import java.time.LocalDate;
+
+@Controller
+public class CommentController {
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private CommentQueue commentQueue;
+
+    @Autowired
+    private CommentService commentService;
+
+    //The next comments of the image after the cursor, rendered as a fragment which the "load more" link of the image page appends to the comments
+    @RequestMapping(value = "/images/{imageId}/comments", method = RequestMethod.GET)
+    public String getComments(@PathVariable("imageId") Integer imageId,
+                              @RequestParam(value = "cursor", required = false) String cursor, Model model) {
+        CommentPage commentPage = commentService.getCommentPage(imageId, cursor);
+        model.addAttribute("comments", commentPage.getComments());
+        model.addAttribute("commentPage", commentPage);
+        model.addAttribute("imageId", imageId);
+        return "images/comments :: comments";
+    }
+
+    //For the comment section
+    //The comment is queued and written in the background, and the user is redirected to the page of the image (Post/Redirect/Get)
+    //The comment shows on the page once it is written, see CommentQueue
+    @RequestMapping(value = "/image/{imageId}/{imageTitle}/comments", method = RequestMethod.POST)
+    public String createComment(@PathVariable("imageId") Integer imageId,
+                                @PathVariable("imageTitle") String imageTitle,
+                                @RequestParam("comment") String comment,
+                                HttpSession session) {
+
+        if (!imageService.imageExists(imageId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No image with id " + imageId);
+        }
+
+        //The comment is written with the id of the image only, so the image is not loaded
+        Image image = new Image();
+        image.setId(imageId);
+
+        User user = (User) session.getAttribute("loggeduser");
+        Comment newComment = new Comment();
+        newComment.setUser(user);
+        newComment.setImage(image);
+        newComment.setCreatedDate(LocalDate.now());
+        newComment.setText(comment);
+
+        commentQueue.submit(newComment);
+
+        //The path variables are encoded into the URL of the redirect
+        return "redirect:/images/{imageId}/{imageTitle}";
+    }
+}
@@ -1,15 +1,14 @@
 package ImageHoster.controller;
 
-import ImageHoster.model.Image;
+import ImageHoster.model.ImagePage;
 import ImageHoster.service.ImageService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
-import java.util.List;
-
-//No changes required from the stub file
+//Serves the gallery on the homepage
 @Controller
 public class HomeController {
 
@@ -17,10 +16,14 @@ public class HomeController {
     private ImageService imageService;
 
     // To be on the homepage
+    // Shows one page of the gallery, 'after' and 'before' are the cursors of the neighbouring pages
     @RequestMapping("/")
-    public String getAllImages(Model model) {
-        List<Image> images = imageService.getAllImages();
-        model.addAttribute("images", images);
+    public String getAllImages(@RequestParam(value = "after", required = false) String after,
+                               @RequestParam(value = "before", required = false) String before,
+                               @RequestParam(value = "size", required = false) Integer size, Model model) {
+        ImagePage page = imageService.getImagePage(after, before, size);
+        model.addAttribute("images", page.getImages());
+        model.addAttribute("page", page);
         return "index";
     }
 }
\ No newline at end of file
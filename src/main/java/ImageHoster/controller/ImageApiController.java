@@ -0,0 +1,72 @@
+package ImageHoster.controller;
+
+import ImageHoster.model.ImageDetail;
+import ImageHoster.model.ImagePage;
+import ImageHoster.model.ImageSummary;
+import ImageHoster.model.PageCursor;
+import ImageHoster.service.ImageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.List;
+
+//Read only JSON API of the images, next to the pages of the gallery and of the images
+//The handlers return Mono/Flux, so Spring MVC handles them asynchronously: the request thread is released while the database is read on the apiScheduler
+//The content of the images is served by ImageFileController, also under /api/images/{id}/raw
+@RestController
+@RequestMapping("/api/images")
+public class ImageApiController {
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private Scheduler apiScheduler;
+
+    @Value("${imagehoster.api.stream-batch-size}")
+    private int streamBatchSize;
+
+    //One page of the gallery with the cursors of the neighbouring pages, like the gallery page ('after', 'before', 'size')
+    @RequestMapping(method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ImagePage> getImagePage(@RequestParam(value = "after", required = false) String after,
+                                        @RequestParam(value = "before", required = false) String before,
+                                        @RequestParam(value = "size", required = false) Integer size) {
+        return Mono.fromCallable(() -> imageService.getImagePage(after, before, size)).subscribeOn(apiScheduler);
+    }
+
+    //All images from the newest one, or from the one after the cursor, as a stream of JSON objects separated by newlines (Accept: application/stream+json)
+    //Each batch is read when the client has taken the previous one, so a slow client holds one batch in memory and no connection while it reads
+    @RequestMapping(method = RequestMethod.GET, produces = MediaType.APPLICATION_STREAM_JSON_VALUE)
+    public Flux<ImageSummary> streamImages(@RequestParam(value = "after", required = false) String after) {
+        return Flux.<List<ImageSummary>, PageCursor[]>generate(() -> new PageCursor[]{PageCursor.parse(after)}, (cursor, sink) -> {
+            List<ImageSummary> batch = imageService.getImagesAfter(cursor[0], streamBatchSize);
+            if (!batch.isEmpty()) {
+                ImageSummary last = batch.get(batch.size() - 1);
+                cursor[0] = new PageCursor(last.getDate(), last.getId());
+                sink.next(batch);
+            }
+            if (batch.size() < streamBatchSize) {
+                sink.complete();
+            }
+            return cursor;
+        }).subscribeOn(apiScheduler).flatMapIterable(batch -> batch, 1);
+    }
+
+    //The image with its owner, tags and number of comments
+    @RequestMapping(value = "/{id}", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<ResponseEntity<ImageDetail>> getImage(@PathVariable("id") Integer id) {
+        return Mono.fromCallable(() -> imageService.getImageDetail(id)).subscribeOn(apiScheduler)
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+}
@@ -1,12 +1,15 @@
 package ImageHoster.controller;
 
-import ImageHoster.model.Comment;
+import ImageHoster.model.CommentPage;
 import ImageHoster.model.Image;
+import ImageHoster.model.ImagePage;
 import ImageHoster.model.Tag;
 import ImageHoster.model.User;
+import ImageHoster.service.CommentService;
 import ImageHoster.service.ImageService;
 import ImageHoster.service.TagService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -14,10 +17,11 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
 import javax.servlet.http.HttpSession;
 import java.io.IOException;
-import java.time.LocalDate;
+import java.io.InputStream;
 import java.util.*;
 
 @Controller
@@ -29,11 +33,18 @@ public class ImageController {
     @Autowired
     private TagService tagService;
 
-    //This method displays all the images in the user home page after successful login
+    @Autowired
+    private CommentService commentService;
+
+    //This method displays the images in the user home page after successful login, one page at a time
+    //'after' and 'before' are the cursors of the neighbouring pages
     @RequestMapping("images")
-    public String getUserImages(Model model) {
-        List<Image> images = imageService.getAllImages();
-        model.addAttribute("images", images);
+    public String getUserImages(@RequestParam(value = "after", required = false) String after,
+                                @RequestParam(value = "before", required = false) String before,
+                                @RequestParam(value = "size", required = false) Integer size, Model model) {
+        ImagePage page = imageService.getImagePage(after, before, size);
+        model.addAttribute("images", page.getImages());
+        model.addAttribute("page", page);
         return "images";
     }
 
@@ -43,7 +54,7 @@ public class ImageController {
         Image image = imageService.getImageByIDorTitle(id,title);
         model.addAttribute("image", image);
         model.addAttribute("tags", image.getTags());
-        model.addAttribute("comments",image.getComments());
+        addComments(image, model);
         return "images/image";
     }
 
@@ -59,11 +70,14 @@ public class ImageController {
 
         User user = (User) session.getAttribute("loggeduser");
         newImage.setUser(user);
-        String uploadedImageData = convertUploadedFileToBase64(file);
-        newImage.setImageFile(uploadedImageData);
+        if (!file.isEmpty()) {
+            try (InputStream data = file.getInputStream()) {
+                imageService.storeImageData(newImage, data);
+            }
+        }
 
         List<Tag> imageTags = findOrCreateTags(tags);
-        newImage.setTags(imageTags);
+        newImage.setTags(new LinkedHashSet<>(imageTags));
         newImage.setDate(new Date());
         imageService.uploadImage(newImage);
         return "redirect:/images";
@@ -75,10 +89,12 @@ public class ImageController {
         User user = (User) session.getAttribute("loggeduser");
 
         //Checking if the "loggeduser" is the owner of the image or not
+        //The image is needed on both pages, it is fetched once after the check
+        boolean owner = this.imageService.confirmOwner(imageId, user.getId());
         Image image = imageService.getImage(imageId);
 
         //If "loggeduser" is the owner of the image
-        if(this.imageService.confirmOwner(imageId, user.getUsername())){
+        if(owner){
             String tags = convertTagsToString(image.getTags());
             model.addAttribute("image", image);
             model.addAttribute("tags", tags);
@@ -90,7 +106,7 @@ public class ImageController {
             String error = "Only the owner of the image can edit the image";
             model.addAttribute("editError", error);
             model.addAttribute("image", image);
-            model.addAttribute("comments",image.getComments());
+            addComments(image, model);
             return "images/image";
         }
 
@@ -100,24 +116,24 @@ public class ImageController {
     @RequestMapping(value = "/editImage", method = RequestMethod.PUT)
     public String editImageSubmit(@RequestParam("file") MultipartFile file, @RequestParam("imageId") Integer imageId, @RequestParam("tags") String tags, Image updatedImage, HttpSession session) throws IOException {
 
-        Image image = imageService.getImage(imageId);
-        String updatedImageData = convertUploadedFileToBase64(file);
+        //Only the owner of the image may save an edit, the check comes before anything is stored
+        User user = (User) session.getAttribute("loggeduser");
+        if (user == null || !imageService.confirmOwner(imageId, user.getId())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only the owner of the image can edit the image");
+        }
+
         List<Tag> imageTags = findOrCreateTags(tags);
 
-        if (updatedImageData.isEmpty())
-            updatedImage.setImageFile(image.getImageFile());
-        else {
-            updatedImage.setImageFile(updatedImageData);
+        //Without a new file the current content is kept, the update does not touch it
+        boolean newContent = !file.isEmpty();
+        if (newContent) {
+            try (InputStream data = file.getInputStream()) {
+                imageService.storeImageData(updatedImage, data);
+            }
         }
 
-        updatedImage.setId(imageId);
-        User user = (User) session.getAttribute("loggeduser");
-        updatedImage.setUser(user);
-        updatedImage.setTags(imageTags);
-        updatedImage.setDate(new Date());
-
-        imageService.updateImage(updatedImage);
-        return "redirect:/images/" + updatedImage.getTitle();
+        Image image = imageService.updateImage(imageId, updatedImage, imageTags, newContent);
+        return "redirect:/images/" + image.getTitle();
     }
 
     //To have an image deleted, we need to make sure if the user is an admin or not
@@ -126,79 +142,50 @@ public class ImageController {
 
     	//Checking if the "loggeduser" is the owner of the image or not
         User user = (User) session.getAttribute("loggeduser");
-        Image image = imageService.getImage(imageId);
 
         //If "loggeduser" is the admin, let him delete the image
-        if(this.imageService.confirmOwner(imageId, user.getUsername())){
+        if(this.imageService.confirmOwner(imageId, user.getId())){
             this.imageService.deleteImage(imageId);
             return "redirect:/images";
         }
         
         //If "loggeduser" is NOT the admin, don't let him delete the image
+        //The image is only fetched to show the error on its page
         else{
+            Image image = imageService.getImage(imageId);
             String error = "Only the owner of the image can delete the image";
             model.addAttribute("deleteError", error);
             model.addAttribute("image", image);
-            model.addAttribute("comments",image.getComments());
+            addComments(image, model);
             return "images/image";
         }
     }
 
-    //For the comment section
-    @RequestMapping(value = "/image/{imageId}/{imageTitle}/comments", method = RequestMethod.POST)
-    public String createComment(@PathVariable("imageId") Integer imageId,
-                              @PathVariable("imageTitle") String imageTitle,
-                                @RequestParam("comment") String comment,
-                              HttpSession session,
-                              Comment newComment,
-                              Image updatedImage, Model model){
-
-        User user = (User) session.getAttribute("loggeduser");
-        newComment.setUser(user);
-        Image image = this.imageService.getImage(imageId);
-        newComment.setCreatedDate(LocalDate.now());
-        newComment.setId(imageId);
-        newComment.setImage(image);
-        newComment.setText(comment);
-
-        //Creating a new comment in the database for the image by the "loggeduser"
-        this.imageService.createComment(newComment);
-        return this.showImage(imageId, imageTitle, model);
-    }
-
-    //This method converts the image to Base64 format
-    private String convertUploadedFileToBase64(MultipartFile file) throws IOException {
-        return Base64.getEncoder().encodeToString(file.getBytes());
+    //The page of an image shows the first page of its comments, the others are loaded with the "load more" link (see CommentController)
+    private void addComments(Image image, Model model) {
+        CommentPage commentPage = commentService.getCommentPage(image.getId(), null);
+        model.addAttribute("comments", commentPage.getComments());
+        model.addAttribute("commentPage", commentPage);
+        model.addAttribute("imageId", image.getId());
     }
 
     //Extracting the list of tags for the images
+    //All the tags are resolved in one batch instead of one lookup (and possibly one insert) per tag
     private List<Tag> findOrCreateTags(String tagNames) {
-        StringTokenizer st = new StringTokenizer(tagNames, ",");
-        List<Tag> tags = new ArrayList<Tag>();
-
-        while (st.hasMoreTokens()) {
-            String tagName = st.nextToken().trim();
-            Tag tag = tagService.getTagByName(tagName);
-
-            if (tag == null) {
-                Tag newTag = new Tag(tagName);
-                tag = tagService.createTag(newTag);
-            }
-            tags.add(tag);
-        }
-        return tags;
+        return tagService.resolveTags(Arrays.asList(tagNames.split(",")));
     }
 
     //Displaying the list of the tags as String
-    private String convertTagsToString(List<Tag> tags) {
+    private String convertTagsToString(Set<Tag> tags) {
         StringBuilder stringForTags = new StringBuilder();
 
-        //Because we don't want to append a comma at the end of the list
-        for (int i = 0; i <= tags.size() - 2; i++) {
-            stringForTags.append(tags.get(i).getName()).append(", ");
+        //Because we don't want to append a comma at the end of the list, the comma goes before every tag but the first
+        for (Tag tag : tags) {
+            if (stringForTags.length() > 0) {
+                stringForTags.append(", ");
+            }
+            stringForTags.append(tag.getName());
         }
-        Tag lastTag = tags.get(tags.size() - 1);
-        stringForTags.append(lastTag.getName());
         return stringForTags.toString();
     }
 }
\ No newline at end of file
@@ -0,0 +1,185 @@
+package ImageHoster.controller;
+
+import ImageHoster.model.Image;
+import ImageHoster.model.ImageContent;
+import ImageHoster.service.ImageService;
+import ImageHoster.storage.ImageTypes;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Controller;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+//Serves the binary content of the images, so that the pages can reference the images by URL instead of embedding them
+//The content is streamed, never loaded on the heap as a whole
+@Controller
+public class ImageFileController {
+
+    //Request attributes of Tomcat for sending a file with sendfile(), i.e. without copying it through the JVM
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    //Used when the URL carries the key of the content (?v=...), the content behind such a URL never changes
+    private static final String CACHE_IMMUTABLE = "public, max-age=31536000, immutable";
+
+    //Used for the plain URL, the content changes when the image is edited, so clients have to revalidate with the ETag
+    private static final String CACHE_REVALIDATE = "public, max-age=0, must-revalidate";
+
+    //Sent with all content, so that a browser neither guesses another type than the one sent nor runs anything in the content if it is opened directly
+    private static final String CONTENT_SECURITY_POLICY = "default-src 'none'; sandbox";
+
+    @Autowired
+    private ImageService imageService;
+
+    //To get the content of the image with the said ID
+    //'variant' selects a rendition ("thumbnail" or "medium"), the original is sent while the rendition is not generated yet
+    //Supports conditional requests (If-None-Match) and single byte ranges (Range, If-Range)
+    //Also mapped for the JSON API; with sendfile Tomcat writes the file from its poller without blocking, the request thread is released right away
+    @RequestMapping(value = {"/images/{id}/raw", "/api/images/{id}/raw"}, method = RequestMethod.GET)
+    public void getImageFile(@PathVariable("id") Integer id, @RequestParam(value = "variant", required = false) String variant,
+                             @RequestParam(value = "v", required = false) String version,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ImageContent content = imageService.getImageContent(id, variant);
+        if (content == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        //Images which are not migrated to the blob store yet
+        if (content.getImageKey() == null) {
+            sendLegacyImageFile(id, response);
+            return;
+        }
+
+        //The key is the hash of the content, which makes it a strong ETag
+        String etag = "\"" + content.getImageKey() + "\"";
+        response.setHeader(HttpHeaders.CACHE_CONTROL, content.getImageKey().equals(version) ? CACHE_IMMUTABLE : CACHE_REVALIDATE);
+        if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+            return;
+        }
+
+        long length = content.getImageSize();
+        long start = 0;
+        long end = length - 1;
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        setContentType(response, content.getMimeType());
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (rangeHeader != null && (ifRange == null || ifRange.equals(etag))) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = null;
+            }
+
+            //Multiple ranges are rare for images, the whole content is sent for them instead of a multipart response
+            if (ranges != null && ranges.size() == 1) {
+                HttpRange range = ranges.get(0);
+                try {
+                    start = range.getRangeStart(length);
+                    end = range.getRangeEnd(length);
+                } catch (IllegalArgumentException e) {
+                    ranges = null;
+                }
+            }
+            if (ranges == null || start > end) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            if (ranges.size() == 1) {
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        Path path = imageService.getImageDataPath(content);
+        if (path != null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            //Tomcat sends the file itself once the handler returns
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+        } else if (path != null) {
+            try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+                WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+                long position = start;
+                while (position <= end) {
+                    long sent = file.transferTo(position, end + 1 - position, out);
+                    //Nothing is sent past the end of the file, e.g. if it was truncated after its length was taken
+                    //The response cannot be completed then and is aborted instead of looping forever
+                    if (sent <= 0) {
+                        throw new EOFException("The content of image " + content.getId() + " ended at byte " + position + " of " + (end + 1));
+                    }
+                    position += sent;
+                }
+            }
+        } else {
+            try (InputStream in = imageService.openImageData(content)) {
+                StreamUtils.copyRange(in, response.getOutputStream(), start, end);
+            }
+        }
+    }
+
+    //Sends the base64 data of an image which is still stored in the database, without ranges or caching
+    private void sendLegacyImageFile(Integer id, HttpServletResponse response) throws IOException {
+        Image image = imageService.getImage(id);
+        Resource data = imageService.getImageData(image);
+        if (data == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        setContentType(response, image.getMimeType());
+        response.setContentLengthLong(data.contentLength());
+        try (InputStream in = data.getInputStream(); OutputStream out = response.getOutputStream()) {
+            StreamUtils.copy(in, out);
+        }
+    }
+
+    //Sends the type only if it is one of the accepted raster types, anything else, e.g. content stored before the types were checked, is sent as a download
+    //Images without a recorded type predate the blob store, the templates always assumed JPEG for them
+    private void setContentType(HttpServletResponse response, String mimeType) {
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setHeader("Content-Security-Policy", CONTENT_SECURITY_POLICY);
+        if (mimeType == null) {
+            response.setContentType(MediaType.IMAGE_JPEG_VALUE);
+        } else if (ImageTypes.isAllowed(mimeType)) {
+            response.setContentType(mimeType);
+        } else {
+            response.setContentType(ImageTypes.UNKNOWN);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment");
+        }
+    }
+}
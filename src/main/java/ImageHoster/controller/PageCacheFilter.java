@@ -0,0 +1,102 @@
+package ImageHoster.controller;
+
+import ImageHoster.model.User;
+import ImageHoster.service.PageCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.UrlPathHelper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//Serves the gallery ('/' and '/images') and the pages of the images from the PageCache, so that these pages are not queried and rendered again on every request
+//The pages are cached per user, since they show the logged in user, and per URL including the cursor of the page
+//Every page is sent with an ETag and Last-Modified, so that clients and proxies can revalidate it and get a 304 if it has not changed
+@Component
+public class PageCacheFilter extends OncePerRequestFilter {
+
+    private static final Pattern IMAGE_PAGE = Pattern.compile("^/images/(\\d+)/([^/]+)$");
+
+    @Autowired
+    private PageCache pageCache;
+
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!"GET".equals(request.getMethod())) {
+            return true;
+        }
+        String path = urlPathHelper.getPathWithinApplication(request);
+        return !isGalleryPage(path) && imageIdOf(path) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String path = urlPathHelper.getPathWithinApplication(request);
+        HttpSession session = request.getSession(false);
+        User user = session != null ? (User) session.getAttribute("loggeduser") : null;
+        String key = (user != null ? user.getId() : "-") + " " + path + (request.getQueryString() != null ? "?" + request.getQueryString() : "");
+
+        //A page which shows the logged in user must not be stored by a shared cache
+        response.setHeader(HttpHeaders.CACHE_CONTROL, user != null ? "private, no-cache" : "no-cache");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.COOKIE);
+
+        PageCache.CachedPage page = pageCache.get(key);
+        if (page != null) {
+            if (new ServletWebRequest(request, response).checkNotModified(page.getEtag(), page.getLastModified())) {
+                return;
+            }
+            response.setContentType(page.getContentType());
+            response.setContentLength(page.getBody().length);
+            response.getOutputStream().write(page.getBody());
+            return;
+        }
+
+        long generation = pageCache.generation();
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        filterChain.doFilter(request, wrapper);
+
+        String contentType = wrapper.getContentType();
+        if (wrapper.getStatus() == HttpStatus.OK.value() && contentType != null && contentType.startsWith("text/html")) {
+            byte[] body = wrapper.getContentAsByteArray();
+            String etag = "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+            long lastModified = System.currentTimeMillis();
+            pageCache.put(key, imageIdOf(path), body, contentType, etag, lastModified, generation);
+            if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+                return;
+            }
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    private boolean isGalleryPage(String path) {
+        return "/".equals(path) || "/images".equals(path);
+    }
+
+    //Returns the id of the image shown at the path, or null if the path is not the page of an image
+    //The further comments of an image ('/images/{id}/comments') are cached like its page, and dropped together with it when a comment is added
+    private Integer imageIdOf(String path) {
+        Matcher matcher = IMAGE_PAGE.matcher(path);
+        if (!matcher.matches() || "raw".equals(matcher.group(2))) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(matcher.group(1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
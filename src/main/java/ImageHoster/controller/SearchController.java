@@ -0,0 +1,31 @@
+package ImageHoster.controller;
+
+import ImageHoster.model.ImagePage;
+import ImageHoster.service.SearchService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+//Full-text search over the images
+@Controller
+public class SearchController {
+
+    @Autowired
+    private SearchService searchService;
+
+    //To search the images by the words in their title, description and comments
+    //'after' is the cursor of the next page of results
+    @RequestMapping(value = "/search", method = RequestMethod.GET)
+    public String search(@RequestParam(value = "q", defaultValue = "") String text,
+                         @RequestParam(value = "after", required = false) String after,
+                         @RequestParam(value = "size", required = false) Integer size, Model model) {
+        ImagePage page = searchService.search(text, after, size);
+        model.addAttribute("images", page.getImages());
+        model.addAttribute("page", page);
+        model.addAttribute("q", text);
+        return "search";
+    }
+}
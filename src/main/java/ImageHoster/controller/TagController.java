@@ -0,0 +1,54 @@
+package ImageHoster.controller;
+
+import ImageHoster.model.ImagePage;
+import ImageHoster.service.ImageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+//Lists the images by their tags
+@Controller
+public class TagController {
+
+    @Autowired
+    private ImageService imageService;
+
+    //To show the images with the said tag, from the newest to the oldest
+    //'after' and 'before' are the cursors of the neighbouring pages
+    @RequestMapping(value = "/tags/{name}", method = RequestMethod.GET)
+    public String getTagImages(@PathVariable("name") String name,
+                               @RequestParam(value = "after", required = false) String after,
+                               @RequestParam(value = "before", required = false) String before,
+                               @RequestParam(value = "size", required = false) Integer size, Model model) {
+        ImagePage page = imageService.searchImagesByTags(Collections.singletonList(name), false, after, before, size);
+        model.addAttribute("images", page.getImages());
+        model.addAttribute("page", page);
+        model.addAttribute("tags", name);
+        model.addAttribute("match", "any");
+        return "tags";
+    }
+
+    //To search the images by several tags, given as a comma separated list
+    //'match' is "all" for the images with all of the tags, otherwise the images with any of them are shown
+    @RequestMapping(value = "/tags", method = RequestMethod.GET)
+    public String searchByTags(@RequestParam("tags") String tags,
+                               @RequestParam(value = "match", defaultValue = "any") String match,
+                               @RequestParam(value = "after", required = false) String after,
+                               @RequestParam(value = "before", required = false) String before,
+                               @RequestParam(value = "size", required = false) Integer size, Model model) {
+        boolean matchAll = "all".equalsIgnoreCase(match);
+        ImagePage page = imageService.searchImagesByTags(Arrays.asList(tags.split(",")), matchAll, after, before, size);
+        model.addAttribute("images", page.getImages());
+        model.addAttribute("page", page);
+        model.addAttribute("tags", tags);
+        model.addAttribute("match", matchAll ? "all" : "any");
+        return "tags";
+    }
+}
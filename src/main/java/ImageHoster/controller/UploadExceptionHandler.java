@@ -0,0 +1,34 @@
+package ImageHoster.controller;
+
+import ImageHoster.storage.BlobTooLargeException;
+import ImageHoster.storage.UnsupportedImageTypeException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.servlet.ModelAndView;
+
+//Shows the upload page with an error if an uploaded file is too large or not an image
+//MaxUploadSizeExceededException is thrown by the container while it parses the request, before any of the file is stored
+//BlobTooLargeException is thrown by the blob store while it copies the file
+//UnsupportedImageTypeException is thrown by ImageService before it stores the file
+@ControllerAdvice
+public class UploadExceptionHandler {
+
+    @ExceptionHandler({MaxUploadSizeExceededException.class, BlobTooLargeException.class})
+    public ModelAndView uploadTooLarge() {
+        return uploadError("The file is too large to be uploaded", HttpStatus.PAYLOAD_TOO_LARGE);
+    }
+
+    @ExceptionHandler(UnsupportedImageTypeException.class)
+    public ModelAndView uploadNotAnImage() {
+        return uploadError("Only JPEG, PNG, GIF and WebP images can be uploaded", HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+    }
+
+    private ModelAndView uploadError(String message, HttpStatus status) {
+        ModelAndView modelAndView = new ModelAndView("images/upload");
+        modelAndView.addObject("uploadError", message);
+        modelAndView.setStatus(status);
+        return modelAndView;
+    }
+}
@@ -1,6 +1,6 @@
 package ImageHoster.controller;
 
-import ImageHoster.model.Image;
+import ImageHoster.model.ImagePage;
 import ImageHoster.model.User;
 import ImageHoster.model.UserProfile;
 import ImageHoster.service.ImageService;
@@ -12,7 +12,6 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 
 import javax.servlet.http.HttpSession;
-import java.util.List;
 
 
 @Controller
@@ -38,6 +37,13 @@ public class UserController {
     @RequestMapping(value = "users/registration", method = RequestMethod.POST)
     public String registerUser(User user, Model model) {
 
+        //If the username is already taken, show the registration page again
+        if (userService.isUsernameTaken(user.getUsername())) {
+            model.addAttribute("usernameTakenError", "Username is already taken");
+            model.addAttribute("User", user);
+            return "users/registration";
+        }
+
     	//If the user registers successfully complying with the complexities of the password
     	//Redirection to the login page
         if(this.userService.registerUser(user))
@@ -82,8 +88,9 @@ public class UserController {
     @RequestMapping(value = "users/logout", method = RequestMethod.POST)
     public String logout(Model model, HttpSession session) {
         session.invalidate();
-        List<Image> images = imageService.getAllImages();
-        model.addAttribute("images", images);
+        ImagePage page = imageService.getImagePage(null, null, null);
+        model.addAttribute("images", page.getImages());
+        model.addAttribute("page", page);
         return "index";
     }
 }
\ No newline at end of file
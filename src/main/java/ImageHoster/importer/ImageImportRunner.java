@@ -0,0 +1,251 @@
+package ImageHoster.importer;
+
+import ImageHoster.model.Image;
+import ImageHoster.model.Tag;
+import ImageHoster.model.User;
+import ImageHoster.service.ImageService;
+import ImageHoster.service.ImportService;
+import ImageHoster.service.RenditionService;
+import ImageHoster.service.TagService;
+import ImageHoster.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+//Command-line mode which imports a directory tree or a ZIP file of images, e.g. to seed the catalog, and exits when it is done
+//Started with --imagehoster.import.source=<directory or .zip> --imagehoster.import.owner=<username>, and with --spring.main.web-application-type=none so that no server is started
+//Every image is stored in the blob store (which hashes it) and decoded and scaled to its renditions on a fork-join pool with one thread per core; the work is CPU-bound, more threads would not make it faster
+//The images are persisted by ImportService with ImageService.uploadImages() in transactions of batch-size images, while the images of the next batch are prepared
+//The same transaction records the source and path of every image in image_imports; an interrupted import is started again with the same arguments and skips exactly the files already written
+//Files which cannot be imported are logged and not recorded, so the next run tries them again
+@Component
+@ConditionalOnProperty(name = "imagehoster.import.source")
+public class ImageImportRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageImportRunner.class);
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private RenditionService renditionService;
+
+    @Autowired
+    private TagService tagService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ImportService importService;
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Value("${imagehoster.import.source}")
+    private String source;
+
+    @Value("${imagehoster.import.owner}")
+    private String owner;
+
+    @Value("${imagehoster.import.threads}")
+    private int threads;
+
+    @Value("${imagehoster.import.batch-size}")
+    private int batchSize;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int exitCode = 0;
+        try {
+            importImages();
+        } catch (IOException | RuntimeException e) {
+            log.error("The import of {} failed", source, e);
+            exitCode = 1;
+        }
+        int status = exitCode;
+        System.exit(SpringApplication.exit(context, () -> status));
+    }
+
+    void importImages() throws IOException {
+        User user = userService.getUser(owner);
+        if (user == null) {
+            throw new IllegalArgumentException("There is no user '" + owner + "' to own the imported images");
+        }
+
+        //The imports are recorded by the absolute path of the source, so that a resumed import finds them however the path is given
+        Path sourcePath = Paths.get(source).toAbsolutePath().normalize();
+        String sourceName = sourcePath.toString();
+        Set<String> imported = importService.getImportedPaths(sourceName);
+        boolean zip = Files.isRegularFile(sourcePath);
+        ForkJoinPool pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        try (FileSystem zipFile = zip ? FileSystems.newFileSystem(sourcePath, (ClassLoader) null) : null) {
+            Path root = zip ? zipFile.getPath("/") : sourcePath;
+            List<Path> files = findImages(root, imported);
+            log.info("Importing {} images from {}, {} were imported before", files.size(), source, imported.size());
+
+            long started = System.currentTimeMillis();
+            int count = 0;
+            List<ForkJoinTask<ImportedImage>> batch = prepare(pool, root, files, 0, user);
+            for (int start = 0; start < files.size(); start += batchSize) {
+                List<ForkJoinTask<ImportedImage>> next = prepare(pool, root, files, start + batchSize, user);
+                count += persist(batch, sourceName);
+                log.info("Imported {} of {} images", count, files.size());
+                batch = next;
+            }
+            log.info("Imported {} images in {} ms, {} could not be imported", count, System.currentTimeMillis() - started,
+                    files.size() - count);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    //The image files below the root which have not been imported, ordered by their path so that every run imports them in the same order
+    //A file is taken as an image if its extension is one of an image type, its content is checked when it is stored
+    private List<Path> findImages(Path root, Set<String> imported) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(path -> mimeType(path) != null && mimeType(path).startsWith("image/"))
+                    .filter(path -> !imported.contains(relativePath(root, path)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    //Starts preparing the images of the batch beginning at 'start' on the pool
+    private List<ForkJoinTask<ImportedImage>> prepare(ForkJoinPool pool, Path root, List<Path> files, int start, User user) {
+        List<ForkJoinTask<ImportedImage>> tasks = new ArrayList<>();
+        for (Path file : files.subList(Math.min(start, files.size()), Math.min(start + batchSize, files.size()))) {
+            tasks.add(pool.submit(() -> prepare(root, file, user)));
+        }
+        return tasks;
+    }
+
+    //Stores the content and the renditions of the image in the blob store and reads the names of its tags
+    //Returns null if the file cannot be imported
+    private ImportedImage prepare(Path root, Path file, User user) {
+        String path = relativePath(root, file);
+        try {
+            Image image = new Image();
+            String fileName = file.getFileName().toString();
+            int extension = fileName.lastIndexOf('.');
+            image.setTitle(extension > 0 ? fileName.substring(0, extension) : fileName);
+            image.setDate(new Date());
+            image.setUser(user);
+            try (InputStream data = Files.newInputStream(file)) {
+                imageService.storeImageData(image, data);
+            }
+            renditionService.createRenditions(image);
+            return new ImportedImage(path, image, tagNames(root, file));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not import {}, it is tried again by the next run", path, e);
+            return null;
+        }
+    }
+
+    //Writes the prepared images of the batch and the record of their files in one transaction, with the tags of all of them resolved at once
+    //Returns the number of images written
+    private int persist(List<ForkJoinTask<ImportedImage>> batch, String sourceName) {
+        List<ImportedImage> prepared = new ArrayList<>();
+        Set<String> names = new LinkedHashSet<>();
+        for (ForkJoinTask<ImportedImage> task : batch) {
+            ImportedImage image = task.join();
+            if (image != null) {
+                prepared.add(image);
+                names.addAll(image.tagNames);
+            }
+        }
+        if (prepared.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, Tag> tags = new HashMap<>();
+        for (Tag tag : tagService.resolveTags(names)) {
+            tags.put(tag.getName(), tag);
+        }
+        List<Image> images = new ArrayList<>();
+        List<String> paths = new ArrayList<>();
+        for (ImportedImage image : prepared) {
+            Set<Tag> imageTags = new LinkedHashSet<>();
+            for (String name : TagService.normalizeTagNames(image.tagNames)) {
+                imageTags.add(tags.get(name));
+            }
+            image.image.setTags(imageTags);
+            images.add(image.image);
+            paths.add(image.path);
+        }
+
+        importService.importImages(sourceName, images, paths);
+        return images.size();
+    }
+
+    //The names in the sidecar file <image>.tags, separated by commas like on the upload page, or else the names of the folders between the root and the image
+    private List<String> tagNames(Path root, Path file) throws IOException {
+        Path sidecar = file.resolveSibling(file.getFileName() + ".tags");
+        if (Files.isRegularFile(sidecar)) {
+            return Arrays.asList(new String(Files.readAllBytes(sidecar), StandardCharsets.UTF_8).split("[,\\n]"));
+        }
+        List<String> names = new ArrayList<>();
+        Path folder = root.relativize(file).getParent();
+        if (folder != null) {
+            for (Path name : folder) {
+                names.add(name.toString());
+            }
+        }
+        return names;
+    }
+
+    private String mimeType(Path file) {
+        return URLConnection.guessContentTypeFromName(file.getFileName().toString().toLowerCase());
+    }
+
+    //The path of the file below the root with '/' as separator, as it is recorded in image_imports
+    private String relativePath(Path root, Path file) {
+        return root.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+    }
+
+    //An image ready to be written, with the path it was read from and the names of its tags
+    private static class ImportedImage {
+
+        private final String path;
+
+        private final Image image;
+
+        private final List<String> tagNames;
+
+        private ImportedImage(String path, Image image, List<String> tagNames) {
+            this.path = path;
+            this.image = image;
+            this.tagNames = tagNames;
+        }
+    }
+}
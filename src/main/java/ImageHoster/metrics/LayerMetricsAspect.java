@@ -0,0 +1,52 @@
+package ImageHoster.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+//Times every public method of the services and of the repositories, as imagehoster.service and imagehoster.repository tagged with the class, the method and the exception thrown (or "none")
+//The time spent in the repositories is also added to the statistics of the request, see RequestMetricsFilter
+@Aspect
+@Component
+public class LayerMetricsAspect {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Around("within(@org.springframework.stereotype.Service *)")
+    public Object timeService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return time("imagehoster.service", joinPoint);
+    }
+
+    @Around("within(@org.springframework.stereotype.Repository *)")
+    public Object timeRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        RequestStats.enterRepository();
+        long start = System.nanoTime();
+        try {
+            return time("imagehoster.repository", joinPoint);
+        } finally {
+            RequestStats.exitRepository(System.nanoTime() - start);
+        }
+    }
+
+    private Object time(String name, ProceedingJoinPoint joinPoint) throws Throwable {
+        long start = System.nanoTime();
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            meterRegistry.timer(name, Tags.of("class", joinPoint.getSignature().getDeclaringType().getSimpleName(),
+                    "method", joinPoint.getSignature().getName(), "exception", exception))
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package ImageHoster.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+//Counts the SQL statements run by Hibernate for the current request, so that N+1 queries show up in the metrics (imagehoster.request.queries)
+//Statements run on a plain JDBC connection (Session.doWork(), e.g. the batch inserts of the comments) are not counted
+//Registered with Hibernate in JpaConfig; the statements are passed on unchanged
+public class QueryCountingInspector implements StatementInspector {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public String inspect(String sql) {
+        RequestStats.countQuery();
+        return sql;
+    }
+}
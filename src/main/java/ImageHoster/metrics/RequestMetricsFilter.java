@@ -0,0 +1,61 @@
+package ImageHoster.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.web.servlet.WebMvcTags;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+//Collects the statistics of every request (see RequestStats) and records the number of SQL statements it ran as imagehoster.request.queries, tagged with the URI pattern like http.server.requests
+//A request which takes longer than 'slow-request-ms' or runs more than 'query-warn-threshold' statements is logged with the time spent in the repositories and in rendering, which tells a slow database from a slow page
+//Runs before the PageCacheFilter, so that pages served from the cache are recorded with no statements
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+public class RequestMetricsFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestMetricsFilter.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${imagehoster.metrics.slow-request-ms}")
+    private long slowRequestMillis;
+
+    @Value("${imagehoster.metrics.query-warn-threshold}")
+    private int queryWarnThreshold;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RequestStats stats = RequestStats.start();
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestStats.end();
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            String uri = WebMvcTags.uri(request, response).getValue();
+            DistributionSummary.builder("imagehoster.request.queries").tag("uri", uri).register(meterRegistry)
+                    .record(stats.getQueries());
+
+            if (millis > slowRequestMillis || stats.getQueries() > queryWarnThreshold) {
+                log.warn("{} {} took {} ms: {} SQL statements, {} ms in repositories, {} ms rendering",
+                        request.getMethod(), uri, millis, stats.getQueries(),
+                        TimeUnit.NANOSECONDS.toMillis(stats.getRepositoryNanos()), TimeUnit.NANOSECONDS.toMillis(stats.getRenderNanos()));
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package ImageHoster.metrics;
+
+//Statistics of the request handled by the current thread, collected to tell where the time of a slow request went
+//Started and ended by the RequestMetricsFilter; outside of a request (background jobs, the comment writer) nothing is collected
+final class RequestStats {
+
+    private static final ThreadLocal<RequestStats> CURRENT = new ThreadLocal<>();
+
+    private int queries;
+
+    private long repositoryNanos;
+
+    //Depth of nested repository calls, only the outermost call is added to the repository time
+    private int repositoryDepth;
+
+    private long renderNanos;
+
+    private RequestStats() {
+    }
+
+    static RequestStats start() {
+        RequestStats stats = new RequestStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    //Called for every SQL statement Hibernate runs, see QueryCountingInspector
+    static void countQuery() {
+        RequestStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.queries++;
+        }
+    }
+
+    static void enterRepository() {
+        RequestStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.repositoryDepth++;
+        }
+    }
+
+    static void exitRepository(long nanos) {
+        RequestStats stats = CURRENT.get();
+        if (stats != null && --stats.repositoryDepth == 0) {
+            stats.repositoryNanos += nanos;
+        }
+    }
+
+    static void addRenderTime(long nanos) {
+        RequestStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.renderNanos += nanos;
+        }
+    }
+
+    public int getQueries() {
+        return queries;
+    }
+
+    public long getRepositoryNanos() {
+        return repositoryNanos;
+    }
+
+    public long getRenderNanos() {
+        return renderNanos;
+    }
+}
@@ -0,0 +1,46 @@
+package ImageHoster.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
+
+//Times the rendering of the views as imagehoster.view.render tagged with the name of the view
+//The view is rendered between postHandle() and afterCompletion(); redirects are not timed, their names contain the target URL
+@Component
+public class ViewRenderInterceptor implements HandlerInterceptor {
+
+    private static final String RENDER_START = ViewRenderInterceptor.class.getName() + ".start";
+
+    private static final String VIEW_NAME = ViewRenderInterceptor.class.getName() + ".view";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView modelAndView) {
+        if (modelAndView == null || modelAndView.getViewName() == null
+                || modelAndView.getViewName().startsWith("redirect:") || modelAndView.getViewName().startsWith("forward:")) {
+            return;
+        }
+        request.setAttribute(VIEW_NAME, modelAndView.getViewName());
+        request.setAttribute(RENDER_START, System.nanoTime());
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Long start = (Long) request.getAttribute(RENDER_START);
+        if (start == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        meterRegistry.timer("imagehoster.view.render", "view", (String) request.getAttribute(VIEW_NAME))
+                .record(nanos, TimeUnit.NANOSECONDS);
+        RequestStats.addRenderTime(nanos);
+    }
+}
@@ -0,0 +1,49 @@
+package ImageHoster.model;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+//Position of a comment on the page of its image, where the comments are ordered by (date, id)
+//The cursor is passed around in the URL as "<date>_<id>", e.g. "2018-10-01_42"
+public class CommentCursor {
+
+    private final LocalDate date;
+
+    private final Integer id;
+
+    public CommentCursor(LocalDate date, Integer id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    //Returns the cursor encoded in the string, or null if the string is empty or not a valid cursor
+    public static CommentCursor parse(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        int separator = value.lastIndexOf('_');
+        if (separator < 0) {
+            return null;
+        }
+        try {
+            LocalDate date = LocalDate.parse(value.substring(0, separator));
+            int id = Integer.parseInt(value.substring(separator + 1));
+            return new CommentCursor(date, id);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return date + "_" + id;
+    }
+}
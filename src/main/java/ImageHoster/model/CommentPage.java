@@ -0,0 +1,25 @@
+package ImageHoster.model;
+
+import java.util.List;
+
+//One page of the comments of an image, oldest first, together with the cursor of the next page
+public class CommentPage {
+
+    private final List<Comment> comments;
+
+    private final String nextCursor;
+
+    public CommentPage(List<Comment> comments, String nextCursor) {
+        this.comments = comments;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Comment> getComments() {
+        return comments;
+    }
+
+    //Cursor to pass as 'cursor' to get the next (newer) comments, null if there are no more comments
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
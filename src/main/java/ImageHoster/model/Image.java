@@ -1,21 +1,36 @@
 package ImageHoster.model;
 
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+
 import javax.persistence.*;
-import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 
 //@Entity annotation specifies that the corresponding class is a JPA entity
 @Entity
 //@Table annotation provides more options to customize the mapping.
 //Here the name of the table to be created in the database is explicitly mentioned as 'images'. Hence the table named 'images' will be created in the database with all the columns mapped to all the attributes in 'Image' class
-@Table(name = "images")
+//The index on (date, id) serves the keyset pagination of the gallery
+@Table(name = "images", indexes = {@Index(name = "images_date_id_idx", columnList = "date, id"),
+        @Index(name = "images_user_id_idx", columnList = "user_id")})
+//The images are kept in the second-level cache, so that the detail pages are served without querying the database
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "images")
+//An update only sets the columns which have changed, so editing the title does not write the content columns again
+//Postgres keeps an unchanged TEXT column (the base64 data of images which are not migrated yet) where it is stored instead of copying it into a new row version
+@DynamicUpdate
 public class Image {
 
     //@Id annotation specifies that the corresponding attribute is a primary key
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    //Every entity has a sequence of its own, which hands out blocks of 50 ids (see V7__entity_sequences.sql)
+    //Hibernate takes the ids of a block from memory, so that only every 50th insert asks the database for an id (pooled-lo optimizer, persistence.xml)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "images_id_seq")
+    @SequenceGenerator(name = "images_id_seq", sequenceName = "images_id_seq", allocationSize = 50)
     //@Column annotation specifies that the attribute will be mapped to the column in the database.
     //Here the column name is explicitly mentioned as 'id'
     @Column(name = "id")
@@ -27,9 +42,29 @@ public class Image {
     // Text is a Postgres specific column type that allows you to save
     // text based data that will be longer than 256 characters
     // this is a base64 encoded version of the image
+    // Only rows created before the blob store was introduced still have it, they are moved to the blob store by the ImageFileMigrationJob
     @Column(columnDefinition = "TEXT")
     private String imageFile;
 
+    //Key of the image content in the BlobStore (the SHA-256 hash of the bytes)
+    @Column(name = "image_key", length = 64)
+    private String imageKey;
+
+    //Size of the image content in bytes
+    @Column(name = "image_size")
+    private Long imageSize;
+
+    @Column(name = "mime_type")
+    private String mimeType;
+
+    //Keys of the downscaled JPEG renditions of the image in the BlobStore, generated in the background by the RenditionService
+    //Null until the renditions are generated; equal to imageKey if the original is already smaller than the rendition
+    @Column(name = "thumbnail_key", length = 64)
+    private String thumbnailKey;
+
+    @Column(name = "medium_key", length = 64)
+    private String mediumKey;
+
 
     @Column(name = "description")
     private String description;
@@ -37,6 +72,11 @@ public class Image {
     @Column(name = "date")
     private Date date;
 
+    //Number of comments on the image, kept up to date by the CommentService, so that the page shows the total without counting the comments
+    //Never written by an update of the image, only by the CommentService, so that editing an image cannot overwrite a concurrent increment
+    @Column(name = "comment_count", updatable = false)
+    private Integer commentCount = 0;
+
     //The 'images' table is mapped to 'users' table with Many:One mapping
     //One image can have only one user (owner) but one user can have multiple images
     //FetchType is EAGER
@@ -45,13 +85,24 @@ public class Image {
     @JoinColumn(name = "user_id")
     private User user;
 
-    //The attribute contains a list of all the tags of an image
+    //The attribute contains the set of all the tags of an image, ordered by name
     //Note that no column will be generated for this attribute in the database instead a new table will be created
     //Since the mapping is Many to Many, a new table will be generated containing the two columns both referencing to the primary key of both the tables ('images', 'tags')
+    //The primary key (images_id, tags_id) of the table serves the loading of the tags of an image, the index on (tags_id, images_id) the tag pages and the tag search
+    //As a set, adding or removing a tag inserts or deletes only the row of that tag, as long as the set itself is changed and not replaced (see ImageService.updateImage())
+    //The cached tags of an image are dropped when they change rather than soft-locked: a bulk upload would otherwise leave a lock entry per new image, which a full region rejects with an error (HHH040003)
     @ManyToMany(fetch = FetchType.LAZY)
-    private List<Tag> tags = new ArrayList<>();
-
-    @OneToMany(mappedBy = "image" , cascade = CascadeType.REMOVE, fetch = FetchType.EAGER)
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "image_tags")
+    @JoinTable(name = "images_tags",
+            joinColumns = @JoinColumn(name = "images_id"),
+            inverseJoinColumns = @JoinColumn(name = "tags_id"),
+            indexes = @Index(name = "images_tags_tags_id_images_id_idx", columnList = "tags_id, images_id"))
+    @OrderBy("name")
+    private Set<Tag> tags = new LinkedHashSet<>();
+
+    //Never loaded by the pages, which read the comments one page at a time through the CommentRepository
+    //The comments are deleted together with the image by ImageRepository.deleteImage() with one statement
+    @OneToMany(mappedBy = "image", fetch = FetchType.LAZY)
     private List<Comment> comments;
 
     
@@ -116,6 +167,46 @@ public class Image {
         this.imageFile = imageFile;
     }
 
+    public String getImageKey() {
+        return imageKey;
+    }
+
+    public void setImageKey(String imageKey) {
+        this.imageKey = imageKey;
+    }
+
+    public Long getImageSize() {
+        return imageSize;
+    }
+
+    public void setImageSize(Long imageSize) {
+        this.imageSize = imageSize;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public void setMimeType(String mimeType) {
+        this.mimeType = mimeType;
+    }
+
+    public String getThumbnailKey() {
+        return thumbnailKey;
+    }
+
+    public void setThumbnailKey(String thumbnailKey) {
+        this.thumbnailKey = thumbnailKey;
+    }
+
+    public String getMediumKey() {
+        return mediumKey;
+    }
+
+    public void setMediumKey(String mediumKey) {
+        this.mediumKey = mediumKey;
+    }
+
     public String getDescription() {
         return description;
     }
@@ -140,11 +231,19 @@ public class Image {
         this.user = user;
     }
 
-    public List<Tag> getTags() {
+    public Set<Tag> getTags() {
         return tags;
     }
 
-    public void setTags(List<Tag> tags) {
+    public void setTags(Set<Tag> tags) {
         this.tags = tags;
     }
+
+    public Integer getCommentCount() {
+        return commentCount;
+    }
+
+    public void setCommentCount(Integer commentCount) {
+        this.commentCount = commentCount;
+    }
 }
\ No newline at end of file
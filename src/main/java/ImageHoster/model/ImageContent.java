@@ -0,0 +1,56 @@
+package ImageHoster.model;
+
+//Read model holding only what is needed to serve the content of an image
+//It is filled directly by a JPQL constructor expression, so serving an image never loads the Image entity with its comments and user
+public class ImageContent {
+
+    private Integer id;
+
+    private String imageKey;
+
+    private Long imageSize;
+
+    private String mimeType;
+
+    //Keys of the renditions of the image, null if they are not generated yet
+    private String thumbnailKey;
+
+    private String mediumKey;
+
+    public ImageContent(Integer id, String imageKey, Long imageSize, String mimeType) {
+        this.id = id;
+        this.imageKey = imageKey;
+        this.imageSize = imageSize;
+        this.mimeType = mimeType;
+    }
+
+    public ImageContent(Integer id, String imageKey, Long imageSize, String mimeType, String thumbnailKey, String mediumKey) {
+        this(id, imageKey, imageSize, mimeType);
+        this.thumbnailKey = thumbnailKey;
+        this.mediumKey = mediumKey;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getImageKey() {
+        return imageKey;
+    }
+
+    public Long getImageSize() {
+        return imageSize;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public String getThumbnailKey() {
+        return thumbnailKey;
+    }
+
+    public String getMediumKey() {
+        return mediumKey;
+    }
+}
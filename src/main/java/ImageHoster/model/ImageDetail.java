@@ -0,0 +1,83 @@
+package ImageHoster.model;
+
+import java.util.Date;
+import java.util.List;
+
+//Read model of an image as it is returned by the JSON API (/api/images/{id})
+//Holds the names instead of the entities of the owner and the tags, so it can be serialized after the transaction has ended
+public class ImageDetail {
+
+    private Integer id;
+
+    private String title;
+
+    private String description;
+
+    private Date date;
+
+    private String owner;
+
+    private List<String> tags;
+
+    private Integer commentCount;
+
+    //Keys of the content and of the renditions, to build the URLs of /images/{id}/raw; the renditions are null until they are generated
+    private String imageKey;
+
+    private String thumbnailKey;
+
+    private String mediumKey;
+
+    public ImageDetail(Image image, List<String> tags) {
+        this.id = image.getId();
+        this.title = image.getTitle();
+        this.description = image.getDescription();
+        this.date = image.getDate();
+        this.owner = image.getUser() != null ? image.getUser().getUsername() : null;
+        this.tags = tags;
+        this.commentCount = image.getCommentCount();
+        this.imageKey = image.getImageKey();
+        this.thumbnailKey = image.getThumbnailKey();
+        this.mediumKey = image.getMediumKey();
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public Integer getCommentCount() {
+        return commentCount;
+    }
+
+    public String getImageKey() {
+        return imageKey;
+    }
+
+    public String getThumbnailKey() {
+        return thumbnailKey;
+    }
+
+    public String getMediumKey() {
+        return mediumKey;
+    }
+}
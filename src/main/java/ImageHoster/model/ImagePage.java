@@ -0,0 +1,34 @@
+package ImageHoster.model;
+
+import java.util.List;
+
+//One page of the gallery together with the cursors of the neighbouring pages
+//A cursor is null if there is no page in that direction
+public class ImagePage {
+
+    private final List<ImageSummary> images;
+
+    private final String nextCursor;
+
+    private final String prevCursor;
+
+    public ImagePage(List<ImageSummary> images, String nextCursor, String prevCursor) {
+        this.images = images;
+        this.nextCursor = nextCursor;
+        this.prevCursor = prevCursor;
+    }
+
+    public List<ImageSummary> getImages() {
+        return images;
+    }
+
+    //Cursor to pass as 'after' to get the next (older) page
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    //Cursor to pass as 'before' to get the previous (newer) page
+    public String getPrevCursor() {
+        return prevCursor;
+    }
+}
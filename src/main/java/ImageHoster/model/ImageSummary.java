@@ -0,0 +1,55 @@
+package ImageHoster.model;
+
+import java.util.Date;
+
+//Read model of an image as it is shown on a card in the gallery
+//It is filled directly by a JPQL constructor expression, so listing images never loads the Image entity with its user, profile and comments
+public class ImageSummary {
+
+    private Integer id;
+
+    private String title;
+
+    private Date date;
+
+    //Key of the image content in the blob store, used to build the URL of the image
+    private String imageKey;
+
+    //Keys of the renditions, null if they are not generated yet
+    private String thumbnailKey;
+
+    private String mediumKey;
+
+    public ImageSummary(Integer id, String title, Date date, String imageKey, String thumbnailKey, String mediumKey) {
+        this.id = id;
+        this.title = title;
+        this.date = date;
+        this.imageKey = imageKey;
+        this.thumbnailKey = thumbnailKey;
+        this.mediumKey = mediumKey;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public String getImageKey() {
+        return imageKey;
+    }
+
+    public String getThumbnailKey() {
+        return thumbnailKey;
+    }
+
+    public String getMediumKey() {
+        return mediumKey;
+    }
+}
@@ -0,0 +1,49 @@
+package ImageHoster.model;
+
+import java.util.Date;
+
+//Position of an image in the gallery, which is ordered by (date, id)
+//A page is fetched by seeking to the cursor with an indexed range condition instead of skipping rows with an OFFSET, so the cost of a page does not depend on how deep in the gallery it is
+//The cursor is passed around in the URL as "<date in milliseconds>_<id>"
+public class PageCursor {
+
+    private final Date date;
+
+    private final Integer id;
+
+    public PageCursor(Date date, Integer id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    //Returns the cursor encoded in the string, or null if the string is empty or not a valid cursor
+    public static PageCursor parse(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        int separator = value.indexOf('_');
+        if (separator < 0) {
+            return null;
+        }
+        try {
+            long millis = Long.parseLong(value.substring(0, separator));
+            int id = Integer.parseInt(value.substring(separator + 1));
+            return new PageCursor(new Date(millis), id);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return date.getTime() + "_" + id;
+    }
+}
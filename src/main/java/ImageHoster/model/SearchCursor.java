@@ -0,0 +1,47 @@
+package ImageHoster.model;
+
+//Position of an image in the results of a full-text search, which are ordered by (rank, id)
+//The cursor is passed around in the URL as "<rank>_<id>"
+public class SearchCursor {
+
+    private final Float rank;
+
+    private final Integer id;
+
+    public SearchCursor(Float rank, Integer id) {
+        this.rank = rank;
+        this.id = id;
+    }
+
+    public Float getRank() {
+        return rank;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    //Returns the cursor encoded in the string, or null if the string is empty or not a valid cursor
+    public static SearchCursor parse(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        int separator = value.lastIndexOf('_');
+        if (separator < 0) {
+            return null;
+        }
+        try {
+            float rank = Float.parseFloat(value.substring(0, separator));
+            int id = Integer.parseInt(value.substring(separator + 1));
+            return new SearchCursor(rank, id);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    //Float.toString() gives the shortest string which parses back to the same float, so the rank compares equal in the next query
+    @Override
+    public String toString() {
+        return rank + "_" + id;
+    }
+}
@@ -1,13 +1,20 @@
 package ImageHoster.model;
 
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 import java.util.List;
+import java.util.Objects;
 
 //@Entity annotation specifies that the corresponding class is a JPA entity
 @Entity
 //@Table annotation provides more options to customize the mapping.
-//Here the name of the table to be created in the database is explicitly mentioned as 'Tags'. Hence the table named 'Tags' will be created in the database with all the columns mapped to all the attributes in 'Tag' class
-@Table(name = "Tags")
+//Here the name of the table in the database is explicitly mentioned as 'tags', in lower case like Postgres stores it, so that the schema validation finds it
+//The names are unique, the batched tag resolution in TagService relies on it
+@Table(name = "tags", uniqueConstraints = @UniqueConstraint(name = "tags_name_key", columnNames = "name"))
+//Tags are never changed once created, so their cache entries never need to be invalidated
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = "tags")
 public class Tag {
 
     //@Id annotation specifies that the corresponding attribute is a primary key
@@ -15,7 +22,8 @@ public class Tag {
     //@Column annotation specifies that the attribute will be mapped to the column in the database.
     //Here the column name is explicitly mentioned as 'id'
     @Column(name = "id")
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tags_id_seq")
+    @SequenceGenerator(name = "tags_id_seq", sequenceName = "tags_id_seq", allocationSize = 50)
     private Integer id;
 
     @Column
@@ -60,4 +68,22 @@ public class Tag {
     public void setImages(List<Image> images) {
         this.images = images;
     }
+
+    //Tags are equal if they have the same name, which is unique and never changes
+    //The tags of an image are a set, and the tags added to it are often detached copies from the cache of the TagService
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Tag)) {
+            return false;
+        }
+        return Objects.equals(name, ((Tag) o).getName());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(name);
+    }
 }
@@ -0,0 +1,96 @@
+package ImageHoster.repository;
+
+import ImageHoster.model.Comment;
+import ImageHoster.model.CommentCursor;
+import ImageHoster.model.Image;
+import org.hibernate.Session;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+public class CommentRepository {
+    //Shared EntityManager bound to the transaction of the calling service
+    @PersistenceContext(unitName = "imageHoster")
+    private EntityManager em;
+
+    //Inserts the comments in one JDBC batch, their ids are taken from the pooled id generator of Comment (see EntityIds)
+    //Only the ids of the image and of the user of a comment are used
+    public void insertComments(List<Comment> comments) {
+        if (comments.isEmpty()) {
+            return;
+        }
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO comments (id, text, date, user_id, image_id) VALUES (?, ?, ?, ?, ?)")) {
+                for (Comment comment : comments) {
+                    statement.setInt(1, EntityIds.next(em, Comment.class));
+                    statement.setString(2, comment.getText());
+                    statement.setDate(3, comment.getCreatedDate() != null ? Date.valueOf(comment.getCreatedDate()) : null);
+                    statement.setObject(4, comment.getUser() != null ? comment.getUser().getId() : null);
+                    statement.setObject(5, comment.getImage().getId());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+
+    //Fetches the comments of the image oldest first, starting after the cursor (from the first comment if the cursor is null)
+    //The users and their profiles are fetched with the comments, the image is not loaded
+    //Fetches 'limit' + 1 comments, so that the caller can tell whether there are more
+    //The date bound is repeated on its own so that it seeks on the (image_id, date, id) index, like ImageRepository.getImagePage()
+    public List<Comment> getComments(Integer imageId, CommentCursor cursor, int limit) {
+        String jpql = "SELECT c from Comment c LEFT JOIN FETCH c.user u LEFT JOIN FETCH u.profile where c.image.id =:imageId " +
+                (cursor != null ? "AND c.createdDate >= :date AND (c.createdDate > :date OR c.id > :id) " : "") +
+                "order by c.createdDate, c.id";
+        TypedQuery<Comment> query = em.createQuery(jpql, Comment.class).setParameter("imageId", imageId);
+        if (cursor != null) {
+            query.setParameter("date", cursor.getDate()).setParameter("id", cursor.getId());
+        }
+        return query.setMaxResults(limit + 1).getResultList();
+    }
+
+    //Adds the given number of comments to the comment count of each image, in one JDBC batch
+    //Bypasses Hibernate like insertComments(), see evictCachedImages()
+    public void incrementCommentCounts(Map<Integer, Integer> countsByImageId) {
+        if (countsByImageId.isEmpty()) {
+            return;
+        }
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE images SET comment_count = coalesce(comment_count, 0) + ? WHERE id = ?")) {
+                for (Map.Entry<Integer, Integer> entry : countsByImageId.entrySet()) {
+                    statement.setInt(1, entry.getValue());
+                    statement.setInt(2, entry.getKey());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+
+    //Sets the comment count of the images which do not have one yet, i.e. the ones created before the count was introduced
+    //Only run at startup; as a native update it clears the whole second-level cache
+    //Returns the number of images updated
+    public int countUncountedComments() {
+        return em.createNativeQuery("UPDATE images SET comment_count = (SELECT count(*) FROM comments c WHERE c.image_id = images.id) " +
+                "WHERE comment_count IS NULL").executeUpdate();
+    }
+
+    //Drops the images from the second-level cache, so that their comment count is read again
+    //Needed after incrementCommentCounts(), which bypasses Hibernate
+    public void evictCachedImages(Collection<Integer> imageIds) {
+        org.hibernate.Cache cache = em.getEntityManagerFactory().getCache().unwrap(org.hibernate.Cache.class);
+        for (Integer imageId : imageIds) {
+            cache.evictEntity(Image.class, imageId);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package ImageHoster.repository;
+
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import javax.persistence.EntityManager;
+
+//Ids for the rows which the repositories insert with plain JDBC, e.g. TagRepository.insertTags()
+//They come from the id generator of the entity, the same block of its sequence which em.persist() takes its ids from, so the database is asked for an id only once per block
+final class EntityIds {
+
+    private EntityIds() {
+    }
+
+    static Integer next(EntityManager em, Class<?> entityClass) {
+        SharedSessionContractImplementor session = (SharedSessionContractImplementor) em.unwrap(Session.class);
+        return (Integer) session.getFactory().getMetamodel().entityPersister(entityClass)
+                .getIdentifierGenerator().generate(session, null);
+    }
+}
@@ -2,162 +2,251 @@ package ImageHoster.repository;
 
 import ImageHoster.model.Comment;
 import ImageHoster.model.Image;
+import ImageHoster.model.ImageContent;
+import ImageHoster.model.ImageSummary;
+import ImageHoster.model.PageCursor;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.*;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 //The annotation is a special type of @Component annotation which describes that the class defines a data repository
 @Repository
 public class ImageRepository {
 
-	// Get an instance of EntityManagerFactory from persistence unit with name as
-	// 'imageHoster'
-	@PersistenceUnit(unitName = "imageHoster")
-	private EntityManagerFactory entMngrFctry;
+	// Get the shared EntityManager of the persistence unit 'imageHoster'
+	// It is bound to the current transaction, which is started by the service layer,
+	// and its connection is taken from the connection pool
+	@PersistenceContext(unitName = "imageHoster")
+	private EntityManager entMngr;
 
 	// The method receives the Image object to be persisted in the database
-	// Creates an instance of EntityManager
-	// Starts a transaction
-	// The transaction is committed if it is successful
-	// The transaction is rolled back in case of unsuccessful transaction
+	// The image is written when the surrounding transaction commits
 	public Image uploadImage(Image newImage) {
+		entMngr.persist(newImage);
+		return newImage;
+	}
 
-		EntityManager entMngr = entMngrFctry.createEntityManager();
-		EntityTransaction transaction = entMngr.getTransaction();
-
-		try {
-			transaction.begin();
+	// The method receives the images of a bulk upload to be persisted in the database
+	// Their ids are taken from the pooled sequence of Image without a round trip per
+	// image, so the images and their rows of images_tags are inserted in JDBC batches
+	// when the persistence context is flushed (see persistence.xml)
+	public void uploadImages(Collection<Image> newImages) {
+		for (Image newImage : newImages) {
 			entMngr.persist(newImage);
-			transaction.commit();
-		} catch (Exception e) {
-			transaction.rollback();
 		}
-		return newImage;
 	}
 
-	// The method creates an instance of EntityManager
 	// Executes JPQL query to fetch all the images from the database
 	// Returns the list of all the images fetched from the database
 	public List<Image> getAllImages() {
-		EntityManager entMngr = entMngrFctry.createEntityManager();
 		TypedQuery<Image> query = entMngr.createQuery("SELECT i from Image i", Image.class);
 		List<Image> resultList = query.getResultList();
 
 		return resultList;
 	}
 
-	// The method creates an instance of EntityManager
-	// Executes JPQL query to fetch the image from the database with corresponding
-	// title
+	// The method fetches one page of the gallery, ordered from the newest to the
+	// oldest image by (date, id)
+	// Seeks to the images after the cursor, or before it if 'backward' is true, and
+	// starts at the newest image if there is no cursor
+	// Only the columns shown on the gallery cards are selected, so neither the user
+	// nor the comments of the images are loaded
+	// Returns the images in the order of the seek direction, fetching 'limit' + 1 of
+	// them so that the caller can tell whether there are more images in that direction
+	// The seek repeats the bound on the date on its own ('i.date <= :date'), which
+	// Postgres can start the scan of the (date, id) index at; the OR alone is only
+	// checked against every row read from the newest image on
+	public List<ImageSummary> getImagePage(PageCursor cursor, boolean backward, int limit) {
+		String select = "SELECT new ImageHoster.model.ImageSummary(i.id, i.title, i.date, i.imageKey, i.thumbnailKey, i.mediumKey) from Image i ";
+		TypedQuery<ImageSummary> query;
+		if (cursor == null) {
+			query = entMngr.createQuery(select + "order by i.date desc, i.id desc", ImageSummary.class);
+		} else if (!backward) {
+			query = entMngr.createQuery(select + "where i.date <= :date AND (i.date < :date OR i.id < :id) order by i.date desc, i.id desc", ImageSummary.class);
+		} else {
+			query = entMngr.createQuery(select + "where i.date >= :date AND (i.date > :date OR i.id > :id) order by i.date asc, i.id asc", ImageSummary.class);
+		}
+		if (cursor != null) {
+			query.setParameter("date", cursor.getDate(), TemporalType.TIMESTAMP).setParameter("id", cursor.getId());
+		}
+
+		return query.setMaxResults(limit + 1).getResultList();
+	}
+
+	// The method fetches the ids of one page of the images with the given tags,
+	// ordered from the newest to the oldest image by id
+	// With 'matchAll' an image needs all of the tags, otherwise any one of them
+	// Seeks to the ids below the cursor, or above it if 'backward' is true, and
+	// starts at the newest image if there is no cursor
+	// Runs on the join table alone, so the (tags_id, images_id) index answers it
+	// without touching the images; fetches 'limit' + 1 ids in the order of the seek
+	// direction, like getImagePage()
+	@SuppressWarnings("unchecked")
+	public List<Integer> getImageIdsByTags(List<Integer> tagIds, boolean matchAll, Integer cursor, boolean backward, int limit) {
+		StringBuilder sql = new StringBuilder("SELECT it.images_id FROM images_tags it WHERE it.tags_id IN (:tagIds) ");
+		if (cursor != null) {
+			sql.append(backward ? "AND it.images_id > :cursor " : "AND it.images_id < :cursor ");
+		}
+		sql.append("GROUP BY it.images_id ");
+		if (matchAll) {
+			sql.append("HAVING COUNT(DISTINCT it.tags_id) = :tagCount ");
+		}
+		sql.append(backward ? "ORDER BY it.images_id ASC" : "ORDER BY it.images_id DESC");
+
+		Query query = entMngr.createNativeQuery(sql.toString()).setParameter("tagIds", tagIds);
+		if (cursor != null) {
+			query.setParameter("cursor", cursor);
+		}
+		if (matchAll) {
+			query.setParameter("tagCount", (long) tagIds.size());
+		}
+		List<Integer> ids = new ArrayList<>();
+		for (Object id : query.setMaxResults(limit + 1).getResultList()) {
+			ids.add(((Number) id).intValue());
+		}
+		return ids;
+	}
+
+	// The method fetches the gallery cards of the images with the given ids, ordered
+	// from the newest to the oldest image by id
+	public List<ImageSummary> getImageSummaries(List<Integer> imageIds) {
+		if (imageIds.isEmpty()) {
+			return new ArrayList<>();
+		}
+		return entMngr.createQuery(
+				"SELECT new ImageHoster.model.ImageSummary(i.id, i.title, i.date, i.imageKey, i.thumbnailKey, i.mediumKey) from Image i where i.id IN :imageIds order by i.id desc",
+				ImageSummary.class).setParameter("imageIds", imageIds).getResultList();
+	}
+
+	// Fetches the image with the corresponding id and checks its title
 	// Returns the image in case the image is found in the database
 	// Returns null if no image is found in the database
 
 	// Edited to select image by title AND ID
+	// The image is looked up by its primary key, so it is served from the
+	// second-level cache once it has been loaded
 	public Image getImageByIDorTitle(Integer id, String title) {
-		EntityManager em = entMngrFctry.createEntityManager();
-		try {
-			TypedQuery<Image> typedQuery = em
-					.createQuery("SELECT img from Image img where img.title =:title AND  img.id=:id", Image.class);
-			typedQuery.setParameter("title", title);
-			typedQuery.setParameter("id", id);
-
-			return typedQuery.getSingleResult();
-		} catch (NoResultException nre) {
+		Image image = entMngr.find(Image.class, id);
+		if (image == null || !title.equals(image.getTitle())) {
 			return null;
 		}
+		return image;
 	}
 
-	// The method creates an instance of EntityManager
-	// Executes JPQL query to fetch the image from the database with corresponding
-	// id
+	// Fetches the image from the database with corresponding id, through the
+	// second-level cache
 	// Returns the image fetched from the database
+	// Throws NoResultException if there is no such image
 	public Image getImage(Integer imageId) {
-		EntityManager entMngr = entMngrFctry.createEntityManager();
-		TypedQuery<Image> typedQuery = entMngr.createQuery("SELECT i from Image i where i.id =:imageId", Image.class)
-				.setParameter("imageId", imageId);
-		Image image = typedQuery.getSingleResult();
+		Image image = entMngr.find(Image.class, imageId);
+		if (image == null) {
+			throw new NoResultException("No image with id " + imageId);
+		}
 		return image;
 	}
 
-	// The method receives the Image object to be updated in the database
-	// Creates an instance of EntityManager
-	// Starts a transaction
-	// The transaction is committed if it is successful
-	// The transaction is rolled back in case of unsuccessful transaction
-	public void updateImage(Image updatedImage) {
-		EntityManager entMngr = entMngrFctry.createEntityManager();
-		EntityTransaction transaction = entMngr.getTransaction();
+	// Returns true if an image with the given id exists, with a scalar query on the
+	// primary key which loads neither the image nor its owner
+	public boolean imageExists(Integer imageId) {
+		Long count = entMngr.createQuery("SELECT COUNT(i) from Image i where i.id =:imageId", Long.class)
+				.setParameter("imageId", imageId).getSingleResult();
+		return count > 0;
+	}
 
+	// The method fetches only the blob keys, size and type of the image with the
+	// corresponding id
+	// The result is kept in the query cache (region 'image_content_queries'), it
+	// is invalidated by any change to the 'images' table
+	// Returns null if no image is found in the database
+	public ImageContent getImageContent(Integer imageId) {
 		try {
-			transaction.begin();
-			entMngr.merge(updatedImage);
-			transaction.commit();
-		} catch (Exception e) {
-			transaction.rollback();
+			return entMngr.createQuery(
+					"SELECT new ImageHoster.model.ImageContent(i.id, i.imageKey, i.imageSize, i.mimeType, i.thumbnailKey, i.mediumKey) from Image i where i.id =:imageId",
+					ImageContent.class).setParameter("imageId", imageId)
+					.setHint("org.hibernate.cacheable", true).setHint("org.hibernate.cacheRegion", "image_content_queries")
+					.getSingleResult();
+		} catch (NoResultException nre) {
+			return null;
 		}
 	}
 
 	// The method receives the Image id of the image to be deleted in the database
-	// Creates an instance of EntityManager
-	// Starts a transaction
 	// Get the image with corresponding image id from the database
 	// This changes the state of the image model from detached state to persistent
 	// state, which is very essential to use the remove() method
 	// If you use remove() method on the object which is not in persistent state, an
 	// exception is thrown
-	// The transaction is committed if it is successful
-	// The transaction is rolled back in case of unsuccessful transaction
+	// The comments of the image are deleted first with a single statement instead of
+	// being loaded and removed one by one
 	public void deleteImage(Integer imageId) {
-		EntityManager entMngr = entMngrFctry.createEntityManager();
-		EntityTransaction transaction = entMngr.getTransaction();
-
-		try {
-			transaction.begin();
-			Image image = entMngr.find(Image.class, imageId);
+		entMngr.createQuery("DELETE FROM Comment c where c.image.id =:imageId").setParameter("imageId", imageId)
+				.executeUpdate();
+		Image image = entMngr.find(Image.class, imageId);
+		if (image != null) {
 			entMngr.remove(image);
-			transaction.commit();
-		} catch (Exception e) {
-			transaction.rollback();
 		}
 	}
 
-	// To confirm if the current user is the owner of the image
-	public boolean confirmOwner(Integer id, String userName) {
-		EntityManager entMngr = entMngrFctry.createEntityManager();
+	// To confirm if the user with the said id is the owner of the image
+	// Compares the owner id with a single scalar query on the primary key, the
+	// image itself is not loaded
+	// Returns false if there is no such image
+	public boolean confirmOwner(Integer id, Integer userId) {
+		Long count = entMngr
+				.createQuery("SELECT COUNT(img) from Image img where img.id =:id AND img.user.id =:userId", Long.class)
+				.setParameter("id", id).setParameter("userId", userId).getSingleResult();
+		return count > 0;
+	}
 
-		try {
-			TypedQuery<Image> typedQuery = entMngr
-					.createQuery("SELECT img from Image img where img.id =:id ", Image.class).setParameter("id", id);
-			if (typedQuery.getSingleResult().getUser().getUsername().equalsIgnoreCase(userName)) {
-				return true;
-			} else {
-				return false;
-			}
-		} catch (NoResultException e) {
-			return false;
-		}
+	// The method fetches the ids and base64 data of the images which are still
+	// stored in the 'imageFile' column and not yet moved to the blob store
+	// Returns at most 'limit' rows with an id greater than 'afterId' as [id, imageFile]
+	// pairs, ordered by id
+	public List<Object[]> getImagesPendingMigration(int afterId, int limit) {
+		return entMngr
+				.createQuery("SELECT i.id, i.imageFile from Image i where i.imageFile IS NOT NULL AND i.imageKey IS NULL AND i.id >:afterId order by i.id", Object[].class)
+				.setParameter("afterId", afterId).setMaxResults(limit).getResultList();
 	}
 
-	// To create a comment to an image
-	public Comment createComment(Comment comment) {
-		EntityManager entMngr = entMngrFctry.createEntityManager();
-		EntityTransaction transaction = entMngr.getTransaction();
+	// The method points the image to its content in the blob store and clears the
+	// base64 data in the same transaction
+	// Called by the background migration outside of any service, so it runs in a
+	// transaction of its own
+	@Transactional
+	public void setImageData(Integer imageId, String imageKey, long imageSize, String mimeType) {
+		entMngr.createQuery("UPDATE Image i SET i.imageKey =:imageKey, i.imageSize =:imageSize, i.mimeType =:mimeType, i.imageFile = NULL where i.id =:imageId")
+				.setParameter("imageKey", imageKey).setParameter("imageSize", imageSize)
+				.setParameter("mimeType", mimeType).setParameter("imageId", imageId).executeUpdate();
+	}
 
-		try {
-			transaction.begin();
-			entMngr.merge(comment);
-			transaction.commit();
-		} catch (Exception e) {
-			e.printStackTrace();
-			transaction.rollback();
-		}
-		return comment;
+	// The method fetches the ids and blob keys of images whose renditions are not
+	// generated yet, ordered by id
+	public List<Object[]> getImagesWithoutRenditions(int limit) {
+		return entMngr
+				.createQuery("SELECT i.id, i.imageKey from Image i where i.imageKey IS NOT NULL AND i.thumbnailKey IS NULL order by i.id", Object[].class)
+				.setMaxResults(limit).getResultList();
+	}
+
+	// The method records the keys of the renditions of the image
+	// The renditions are only recorded if the image still has the content they were
+	// generated from, so that a rendition of replaced content is never attached
+	// Called by the rendition workers outside of any service, so it runs in a
+	// transaction of its own
+	// Like every bulk update, it evicts the cached images, which happens once per
+	// uploaded image
+	@Transactional
+	public void setRenditions(Integer imageId, String imageKey, String thumbnailKey, String mediumKey) {
+		entMngr.createQuery("UPDATE Image i SET i.thumbnailKey =:thumbnailKey, i.mediumKey =:mediumKey where i.id =:imageId AND i.imageKey =:imageKey")
+				.setParameter("thumbnailKey", thumbnailKey).setParameter("mediumKey", mediumKey)
+				.setParameter("imageId", imageId).setParameter("imageKey", imageKey).executeUpdate();
 	}
 
 	//To get all the comments for a particular image
 	public List<Comment> getAllComments() {
-		EntityManager entMngr = entMngrFctry.createEntityManager();
 		TypedQuery<Comment> query = entMngr.createQuery("SELECT cmnt from Comment cmnt", Comment.class);
 		List<Comment> resultList = query.getResultList();
 		return resultList;
@@ -0,0 +1,45 @@
+package ImageHoster.repository;
+
+import org.hibernate.Session;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Map;
+
+//The log of the files written by the bulk import, table image_imports
+//The table is not mapped on an entity, it is only read and written here
+@Repository
+public class ImportRepository {
+    //Shared EntityManager bound to the transaction of the calling service
+    @PersistenceContext(unitName = "imageHoster")
+    private EntityManager em;
+
+    //Returns the paths of the files of the source which have been imported
+    @SuppressWarnings("unchecked")
+    public List<String> getImportedPaths(String source) {
+        return em.createNativeQuery("SELECT path FROM image_imports WHERE source = :source")
+                .setParameter("source", source).getResultList();
+    }
+
+    //Records the files of the source with the ids of the images they were imported as, in one JDBC batch
+    public void recordImports(String source, Map<String, Integer> imageIdsByPath) {
+        if (imageIdsByPath.isEmpty()) {
+            return;
+        }
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO image_imports (source, path, image_id) VALUES (?, ?, ?)")) {
+                for (Map.Entry<String, Integer> entry : imageIdsByPath.entrySet()) {
+                    statement.setString(1, source);
+                    statement.setString(2, entry.getKey());
+                    statement.setInt(3, entry.getValue());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+}
@@ -0,0 +1,113 @@
+package ImageHoster.repository;
+
+import ImageHoster.model.Comment;
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.List;
+
+//Maintains and queries the full-text search index of the images
+//Every image has a tsvector column 'search_vector' with the words of its title (weight A), description (weight B) and comments (weight C), indexed with a GIN index
+//The column is not mapped on the Image entity, it is only ever written and read by the native queries below; it is created by the migration V1__baseline.sql
+//The updates only touch that column, so they are declared to affect the query space 'images_search' only; otherwise Hibernate would clear the whole second-level cache after each of them
+//New comments are appended to the vector, the vector is only computed in full for new images
+@Repository
+public class SearchRepository {
+
+    //The words of the title and the description of the image in the row 'images', the config is the name of the Postgres text search configuration
+    private static final String TEXT_VECTOR =
+            "setweight(to_tsvector(CAST(:config AS regconfig), coalesce(images.title, '')), 'A') || " +
+            "setweight(to_tsvector(CAST(:config AS regconfig), coalesce(images.description, '')), 'B')";
+
+    //The words of all comments of the image, which takes reading every comment of it
+    private static final String COMMENTS_VECTOR =
+            "setweight(to_tsvector(CAST(:config AS regconfig), coalesce((SELECT string_agg(c.text, ' ') FROM comments c WHERE c.image_id = images.id), '')), 'C')";
+
+    //The search vector of the image in the row 'images'
+    private static final String SEARCH_VECTOR = TEXT_VECTOR + " || " + COMMENTS_VECTOR;
+
+    //Shared EntityManager bound to the transaction of the calling service
+    @PersistenceContext(unitName = "imageHoster")
+    private EntityManager em;
+
+    //Computes the search vector of the images which do not have one yet, e.g. the ones created before the search was introduced
+    //Returns the number of images indexed
+    public int indexUnindexedImages(String config) {
+        return searchUpdate("UPDATE images SET search_vector = " + SEARCH_VECTOR + " WHERE search_vector IS NULL")
+                .setParameter("config", config).executeUpdate();
+    }
+
+    //Recomputes the search vector of the image with the said id from its current title, description and comments
+    //The pending changes of the transaction are flushed first, so that the vector includes them
+    public void indexImage(Integer imageId, String config) {
+        em.flush();
+        searchUpdate("UPDATE images SET search_vector = " + SEARCH_VECTOR + " WHERE id = :imageId")
+                .setParameter("config", config).setParameter("imageId", imageId).executeUpdate();
+    }
+
+    //Recomputes the search vectors of the images with the said ids with one statement, like indexImage()
+    public void indexImages(Collection<Integer> imageIds, String config) {
+        em.flush();
+        searchUpdate("UPDATE images SET search_vector = " + SEARCH_VECTOR + " WHERE id IN (:imageIds)")
+                .setParameter("config", config).setParameter("imageIds", imageIds).executeUpdate();
+    }
+
+    //Recomputes the words of the title and the description of the image after they were edited
+    //The words of the comments are kept from the current vector (the lexemes of weight C), so the comments are not read again
+    public void indexImageText(Integer imageId, String config) {
+        em.flush();
+        searchUpdate("UPDATE images SET search_vector = " + TEXT_VECTOR + " || coalesce(ts_filter(search_vector, '{c}'), " + COMMENTS_VECTOR + ") " +
+                "WHERE id = :imageId")
+                .setParameter("config", config).setParameter("imageId", imageId).executeUpdate();
+    }
+
+    //Appends the words of the new comments to the search vectors of their images, in one JDBC batch
+    //Only the text of each comment is converted, the title, description and earlier comments are left as they are
+    //Images which are not indexed yet are skipped, indexUnindexedImages() indexes them with all of their comments
+    public void indexComments(List<Comment> comments, String config) {
+        if (comments.isEmpty()) {
+            return;
+        }
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE images SET search_vector = search_vector || setweight(to_tsvector(CAST(? AS regconfig), coalesce(?, '')), 'C') " +
+                            "WHERE id = ? AND search_vector IS NOT NULL")) {
+                for (Comment comment : comments) {
+                    statement.setString(1, config);
+                    statement.setString(2, comment.getText());
+                    statement.setInt(3, comment.getImage().getId());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
+
+    private Query searchUpdate(String sql) {
+        return em.createNativeQuery(sql).unwrap(NativeQuery.class).addSynchronizedQuerySpace("images_search");
+    }
+
+    //Fetches the images matching the text, from the best to the worst match, as [id, rank] pairs
+    //Ties in the rank are ordered by id, newest first; the rank and id of the last image of the previous page are the cursor of the next page
+    //Fetches 'limit' + 1 rows, so that the caller can tell whether there are more
+    @SuppressWarnings("unchecked")
+    public List<Object[]> searchImages(String text, String config, Float cursorRank, Integer cursorId, int limit) {
+        String sql = "SELECT s.id, s.rank FROM (" +
+                "SELECT i.id AS id, ts_rank(i.search_vector, q.query) AS rank " +
+                "FROM images i, plainto_tsquery(CAST(:config AS regconfig), :text) AS q(query) " +
+                "WHERE i.search_vector @@ q.query) s " +
+                (cursorId != null ? "WHERE s.rank < :rank OR (s.rank = :rank AND s.id < :id) " : "") +
+                "ORDER BY s.rank DESC, s.id DESC";
+        Query query = em.createNativeQuery(sql).setParameter("config", config).setParameter("text", text);
+        if (cursorId != null) {
+            query.setParameter("rank", cursorRank).setParameter("id", cursorId);
+        }
+        return query.setMaxResults(limit + 1).getResultList();
+    }
+}
@@ -1,31 +1,27 @@
 package ImageHoster.repository;
 
 import ImageHoster.model.Tag;
+import org.hibernate.Session;
 import org.springframework.stereotype.Repository;
 import javax.persistence.*;
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
-//No changes from the stub file
+//Looks up and creates the tags, the tags of many images are found with one IN query and the missing ones inserted in one JDBC batch
 @Repository
 public class TagRepository {
-    @PersistenceUnit(unitName = "imageHoster")
-    private EntityManagerFactory emf;
+    //Shared EntityManager bound to the transaction of the calling service
+    @PersistenceContext(unitName = "imageHoster")
+    private EntityManager em;
 
     public Tag createTag(Tag tag) {
-        EntityManager em = emf.createEntityManager();
-        EntityTransaction transaction = em.getTransaction();
-
-        try {
-            transaction.begin();
-            em.persist(tag);
-            transaction.commit();
-        } catch (Exception e) {
-            transaction.rollback();
-        }
+        em.persist(tag);
         return tag;
     }
 
     public Tag findTag(String tagName) {
-        EntityManager em = emf.createEntityManager();
         try {
             TypedQuery<Tag> typedQuery = em.createQuery("SELECT t from Tag t where t.name =:tagName", Tag.class).setParameter("tagName", tagName);
             return typedQuery.getSingleResult();
@@ -33,4 +29,32 @@ public class TagRepository {
             return null;
         }
     }
+
+    //Fetches all the tags with the given names with a single IN query
+    public List<Tag> findTags(Collection<String> tagNames) {
+        if (tagNames.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return em.createQuery("SELECT t from Tag t where t.name IN :tagNames", Tag.class)
+                .setParameter("tagNames", tagNames).getResultList();
+    }
+
+    //Inserts tags with the given names in one JDBC batch, their ids are taken from the pooled id generator of Tag (see EntityIds)
+    //Names which already exist, e.g. because another request inserted them concurrently, are skipped by ON CONFLICT DO NOTHING instead of failing the transaction
+    public void insertTags(Collection<String> tagNames) {
+        if (tagNames.isEmpty()) {
+            return;
+        }
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO tags (id, name) VALUES (?, ?) ON CONFLICT DO NOTHING")) {
+                for (String tagName : tagNames) {
+                    statement.setInt(1, EntityIds.next(em, Tag.class));
+                    statement.setString(2, tagName);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        });
+    }
 }
\ No newline at end of file
@@ -1,46 +1,47 @@
 package ImageHoster.repository;
 
-//No changes from the stub file
 import ImageHoster.model.User;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.*;
+import java.util.List;
 
 //The annotation is a special type of @Component annotation which describes that the class defines a data repository
 @Repository
 public class UserRepository {
-    //Get an instance of EntityManagerFactory from persistence unit with name as 'imageHoster'
-    @PersistenceUnit(unitName = "imageHoster")
-    private EntityManagerFactory emf;
+    //Get the shared EntityManager of the persistence unit 'imageHoster'
+    //It is bound to the transaction of the calling service and uses a pooled connection
+    @PersistenceContext(unitName = "imageHoster")
+    private EntityManager em;
 
     //The method receives the User object to be persisted in the database
-    //Creates an instance of EntityManager
-    //Starts a transaction
-    //The transaction is committed if it is successful
-    //The transaction is rolled back in case of unsuccessful transaction
+    //The user is written when the surrounding transaction commits
     public void registerUser(User newUser) {
-        EntityManager em = emf.createEntityManager();
-        EntityTransaction transaction = em.getTransaction();
+        //persist() method changes the state of the model object from transient state to persistence state
+        em.persist(newUser);
+    }
 
-        try {
-            transaction.begin();
-            //persist() method changes the state of the model object from transient state to persistence state
-            em.persist(newUser);
-            transaction.commit();
-        } catch (Exception e) {
-            transaction.rollback();
-        }
+
+    //Returns true if a user with the given username exists, with a scalar query on the unique index of the username
+    public boolean isUsernameTaken(String username) {
+        Long count = em.createQuery("SELECT COUNT(u) FROM User u WHERE u.username = :username", Long.class)
+                .setParameter("username", username).getSingleResult();
+        return count > 0;
     }
 
+    //Returns the user with the given username, or null if there is none
+    public User getUser(String username) {
+        List<User> users = em.createQuery("SELECT u FROM User u WHERE u.username = :username", User.class)
+                .setParameter("username", username).getResultList();
+        return users.isEmpty() ? null : users.get(0);
+    }
 
     //The method receives the entered username and password
-    //Creates an instance of EntityManager
     //Executes JPQL query to fetch the user from User class where username is equal to received username and password is equal to received password
     //Returns the fetched user
     //Returns null in case of NoResultException
     public User checkUser(String username, String password) {
         try {
-            EntityManager em = emf.createEntityManager();
             TypedQuery<User> typedQuery = em.createQuery("SELECT u FROM User u WHERE u.username = :username AND u.password = :password", User.class);
             typedQuery.setParameter("username", username);
             typedQuery.setParameter("password", password);
@@ -0,0 +1,143 @@
+package ImageHoster.service;
+
+import ImageHoster.model.Comment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+//Takes the comments posted by the users and writes them in batches in the background, so that posting a comment never waits for the database
+//A single writer thread collects the queued comments until it has 'flush-size' of them or 'flush-interval-ms' have passed since the first one, and writes them with one batch insert
+//
+//Durability:
+//- A queued comment is written within about 'flush-interval-ms'; until then it is not shown on the page of the image
+//- If the queue is full, or the application is shutting down, the comment is written by the posting request itself, so comments are never dropped because of load
+//- On a regular shutdown the queued comments are written before the application stops, waiting at most 'shutdown-timeout-ms'
+//- If the process dies (kill -9, crash, power loss), the comments still in the queue are lost; that is at most 'queue-capacity' comments
+//- If a batch cannot be written, its comments are written one by one, so that a single bad comment (e.g. on an image deleted in the meantime) does not take the others with it; comments which still fail are logged and dropped
+@Service
+public class CommentQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(CommentQueue.class);
+
+    @Autowired
+    private CommentService commentService;
+
+    @Value("${imagehoster.comments.queue-capacity}")
+    private int queueCapacity;
+
+    @Value("${imagehoster.comments.flush-size}")
+    private int flushSize;
+
+    @Value("${imagehoster.comments.flush-interval-ms}")
+    private long flushIntervalMillis;
+
+    @Value("${imagehoster.comments.shutdown-timeout-ms}")
+    private long shutdownTimeoutMillis;
+
+    private BlockingQueue<Comment> queue;
+
+    private Thread writer;
+
+    //Guarded by 'this', so that no comment is queued after the writer has been told to stop
+    private boolean running;
+
+    @PostConstruct
+    public synchronized void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writer = new Thread(this::writeQueuedComments, "comment-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    //Writes the queued comments and stops the writer
+    //The writer notices within 'flush-interval-ms' and stops waiting for more comments
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        synchronized (this) {
+            running = false;
+        }
+        writer.join(shutdownTimeoutMillis);
+        if (writer.isAlive()) {
+            log.error("Comment writer did not finish within {} ms, {} comments are lost", shutdownTimeoutMillis, queue.size());
+        }
+    }
+
+    //Queues the comment and returns immediately
+    //Writes the comment before returning if the queue is full or the writer is stopped
+    public void submit(Comment comment) {
+        synchronized (this) {
+            if (running && queue.offer(comment)) {
+                return;
+            }
+        }
+        write(Collections.singletonList(comment));
+    }
+
+    //The writer is never interrupted, stop() only clears 'running'; an interrupt could fail the database work of a batch
+    private void writeQueuedComments() {
+        List<Comment> batch = new ArrayList<>(flushSize);
+        try {
+            while (true) {
+                Comment first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    //No comment can be queued once the writer is stopped, so an empty queue stays empty
+                    if (isStopped() && queue.isEmpty()) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+
+                //Waits for more comments until the batch is full or the interval has passed, but not while shutting down
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                while (batch.size() < flushSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Comment next = remaining > 0 && !isStopped() ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                write(batch);
+                batch = new ArrayList<>(flushSize);
+            }
+        } catch (InterruptedException e) {
+            log.error("Comment writer was interrupted, {} comments are lost", batch.size() + queue.size());
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized boolean isStopped() {
+        return !running;
+    }
+
+    private void write(List<Comment> comments) {
+        try {
+            commentService.createComments(comments);
+        } catch (RuntimeException e) {
+            if (comments.size() == 1) {
+                Comment comment = comments.get(0);
+                log.error("Could not write the comment of user {} on image {}, the comment is lost",
+                        comment.getUser() != null ? comment.getUser().getId() : null, comment.getImage().getId(), e);
+                return;
+            }
+            log.warn("Could not write a batch of {} comments, writing them one by one", comments.size(), e);
+            for (Comment comment : comments) {
+                write(Collections.singletonList(comment));
+            }
+        }
+    }
+}
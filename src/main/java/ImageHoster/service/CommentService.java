@@ -0,0 +1,100 @@
+package ImageHoster.service;
+
+import ImageHoster.model.Comment;
+import ImageHoster.model.CommentCursor;
+import ImageHoster.model.CommentPage;
+import ImageHoster.repository.CommentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Service
+public class CommentService {
+
+    private static final Logger log = LoggerFactory.getLogger(CommentService.class);
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private SearchService searchService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${imagehoster.comments.page-size}")
+    private int pageSize;
+
+    //Counts the comments of the images created before the comment count was introduced
+    @EventListener(ContextRefreshedEvent.class)
+    @Transactional
+    public void countComments() {
+        int counted = commentRepository.countUncountedComments();
+        if (counted > 0) {
+            log.info("Counted the comments of {} images", counted);
+        }
+    }
+
+    //Returns one page of the comments of the image, oldest first, starting after the cursor
+    //An empty or invalid cursor gives the first page
+    @Transactional(readOnly = true)
+    public CommentPage getCommentPage(Integer imageId, String cursor) {
+        List<Comment> comments = commentRepository.getComments(imageId, CommentCursor.parse(cursor), pageSize);
+        String nextCursor = null;
+        if (comments.size() > pageSize) {
+            comments = comments.subList(0, pageSize);
+            Comment last = comments.get(pageSize - 1);
+            nextCursor = new CommentCursor(last.getCreatedDate(), last.getId()).toString();
+        }
+        return new CommentPage(comments, nextCursor);
+    }
+
+    //Writes the comments with one batch insert in a single transaction, and adds them to the comment counts of their images
+    //The words of the comments are added to the search vectors of their images, and the cached images and pages are dropped once the transaction has committed
+    //Either all of the comments are written or none of them
+    @Transactional
+    public void createComments(List<Comment> comments) {
+        commentRepository.insertComments(comments);
+
+        Map<Integer, Integer> countsByImageId = new LinkedHashMap<>();
+        for (Comment comment : comments) {
+            countsByImageId.merge(comment.getImage().getId(), 1, Integer::sum);
+        }
+        commentRepository.incrementCommentCounts(countsByImageId);
+
+        Set<Integer> imageIds = countsByImageId.keySet();
+        //Registered before the events are published, so that the cached images are gone before the cached pages
+        evictAfterCommit(imageIds);
+        searchService.indexComments(comments);
+        for (Integer imageId : imageIds) {
+            eventPublisher.publishEvent(new ImageChangedEvent(imageId, false));
+        }
+    }
+
+    //Evicting before the commit would let a concurrent request cache the images with the old counts again
+    private void evictAfterCommit(Set<Integer> imageIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            commentRepository.evictCachedImages(imageIds);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                commentRepository.evictCachedImages(imageIds);
+            }
+        });
+    }
+}
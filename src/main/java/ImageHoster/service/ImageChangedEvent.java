@@ -0,0 +1,23 @@
+package ImageHoster.service;
+
+//Published whenever an image or anything shown with it changes, e.g. its comments or renditions
+//'galleryChanged' is false for changes which only show on the page of the image itself, like a new comment
+public class ImageChangedEvent {
+
+    private final Integer imageId;
+
+    private final boolean galleryChanged;
+
+    public ImageChangedEvent(Integer imageId, boolean galleryChanged) {
+        this.imageId = imageId;
+        this.galleryChanged = galleryChanged;
+    }
+
+    public Integer getImageId() {
+        return imageId;
+    }
+
+    public boolean isGalleryChanged() {
+        return galleryChanged;
+    }
+}
@@ -0,0 +1,75 @@
+package ImageHoster.service;
+
+import ImageHoster.repository.ImageRepository;
+import ImageHoster.storage.BlobStore;
+import ImageHoster.storage.ImageTypes;
+import ImageHoster.storage.StoredBlob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.List;
+
+//Background job moving the base64 data of the images created before the blob store existed into the BlobStore
+//Every run migrates one batch of images, each image is committed on its own
+//Migrated images no longer match the pending query, so an interrupted migration simply continues with the remaining images on the next run
+//The runs page through the pending images by id, so an image which fails on every run does not keep the images after it from being migrated
+//Failed images are tried again once the end is reached and the next pass starts from the first pending image
+//Writing a blob twice is harmless because the store is content-addressed
+@Component
+@ConditionalOnProperty(name = "imagehoster.storage.migration.enabled", havingValue = "true", matchIfMissing = true)
+public class ImageFileMigrationJob {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageFileMigrationJob.class);
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Value("${imagehoster.storage.migration.batch-size}")
+    private int batchSize;
+
+    //The id of the last image of the previous batch, the runs are never concurrent (fixed delay)
+    private int lastImageId;
+
+    @Scheduled(initialDelayString = "${imagehoster.storage.migration.initial-delay-ms}", fixedDelayString = "${imagehoster.storage.migration.delay-ms}")
+    public void migrateBatch() {
+        List<Object[]> pending = imageRepository.getImagesPendingMigration(lastImageId, batchSize);
+        if (pending.isEmpty()) {
+            lastImageId = 0;
+            return;
+        }
+
+        int migrated = 0;
+        for (Object[] row : pending) {
+            Integer imageId = (Integer) row[0];
+            lastImageId = imageId;
+            try {
+                byte[] data = Base64.getDecoder().decode((String) row[1]);
+                StoredBlob blob = blobStore.put(data);
+                imageRepository.setImageData(imageId, blob.getKey(), blob.getSize(), guessMimeType(data));
+                migrated++;
+            } catch (IOException | RuntimeException e) {
+                //Leaving the image as it is, it will be picked up again on the next pass
+                log.warn("Could not migrate the data of image {}", imageId, e);
+            }
+        }
+
+        log.info("Migrated {} images to the blob store, {} failed", migrated, pending.size() - migrated);
+    }
+
+    //The old upload path did not record the type of the image, so it is detected from the content
+    //Content which is not one of the accepted raster types is recorded as a download, it could be HTML or SVG uploaded as an image
+    private String guessMimeType(byte[] data) {
+        String mimeType = ImageTypes.detect(data);
+        return mimeType != null ? mimeType : ImageTypes.UNKNOWN;
+    }
+}
@@ -1,62 +1,380 @@
 package ImageHoster.service;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import ImageHoster.model.Comment;
 import ImageHoster.model.Image;
+import ImageHoster.model.ImageContent;
+import ImageHoster.model.ImageDetail;
+import ImageHoster.model.ImagePage;
+import ImageHoster.model.ImageSummary;
+import ImageHoster.model.PageCursor;
+import ImageHoster.model.Tag;
 import ImageHoster.repository.ImageRepository;
+import ImageHoster.repository.TagRepository;
+import ImageHoster.storage.BlobStore;
+import ImageHoster.storage.ImageTypes;
+import ImageHoster.storage.StoredBlob;
+import ImageHoster.storage.UnsupportedImageTypeException;
 
+//The transactions are started here, the repositories take part in them
+//Every change of an image is published as an ImageChangedEvent, which drops the cached pages showing the image once the transaction has committed
+//Methods which only deal with the blob store are not transactional, so that no database connection is held while image content is copied
 @Service
 public class ImageService {
 	@Autowired
 	private ImageRepository imageRepository;
 
+	@Autowired
+	private TagRepository tagRepository;
+
+	@Autowired
+	private BlobStore blobStore;
+
+	@Autowired
+	private RenditionService renditionService;
+
+	@Autowired
+	private SearchService searchService;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Value("${imagehoster.upload.max-size}")
+	private long maxUploadSize;
+
+	@Value("${imagehoster.gallery.page-size}")
+	private int defaultPageSize;
+
+	@Value("${imagehoster.gallery.max-page-size}")
+	private int maxPageSize;
+
 	// Call the getAllImages() method in the Repository and obtain a List of all the
 	// images in the database
+	@Transactional(readOnly = true)
 	public List<Image> getAllImages() {
 		return imageRepository.getAllImages();
 	}
 
+	// The method fetches one page of the gallery
+	// 'after' and 'before' are the cursors of the neighbouring pages, at most one of
+	// them is expected; without a cursor the page starts at the newest image
+	// The page size is limited to the configured maximum, the configured default is
+	// used if no size is given
+	@Transactional(readOnly = true)
+	public ImagePage getImagePage(String after, String before, Integer size) {
+		int limit = size == null || size < 1 ? defaultPageSize : Math.min(size, maxPageSize);
+		PageCursor afterCursor = PageCursor.parse(after);
+		PageCursor beforeCursor = afterCursor == null ? PageCursor.parse(before) : null;
+		boolean backward = beforeCursor != null;
+
+		List<ImageSummary> images = new ArrayList<>(
+				imageRepository.getImagePage(backward ? beforeCursor : afterCursor, backward, limit));
+		boolean hasMore = images.size() > limit;
+		if (hasMore) {
+			images.remove(limit);
+		}
+		if (backward) {
+			Collections.reverse(images);
+		}
+		if (images.isEmpty()) {
+			return new ImagePage(images, null, null);
+		}
+
+		//Moving forward there is a previous page whenever a cursor was given, moving
+		//backward there is always a next page (the one the cursor came from)
+		boolean hasNext = backward || hasMore;
+		boolean hasPrev = backward ? hasMore : afterCursor != null;
+		String nextCursor = hasNext ? cursorOf(images.get(images.size() - 1)) : null;
+		String prevCursor = hasPrev ? cursorOf(images.get(0)) : null;
+		return new ImagePage(images, nextCursor, prevCursor);
+	}
+
+	// The method fetches at most 'limit' images older than the cursor, or the newest
+	// images without a cursor, in the order of the gallery
+	// Used to stream the whole gallery batch by batch, see ImageApiController
+	@Transactional(readOnly = true)
+	public List<ImageSummary> getImagesAfter(PageCursor cursor, int limit) {
+		List<ImageSummary> images = imageRepository.getImagePage(cursor, false, limit);
+		return images.size() > limit ? images.subList(0, limit) : images;
+	}
+
+	// The method fetches the image with its owner and the names of its tags for the
+	// JSON API, or returns null if no image is found in the database
+	@Transactional(readOnly = true)
+	public ImageDetail getImageDetail(Integer imageId) {
+		Image image;
+		try {
+			image = imageRepository.getImage(imageId);
+		} catch (EmptyResultDataAccessException e) {
+			return null;
+		}
+		List<String> tags = new ArrayList<>();
+		for (Tag tag : image.getTags()) {
+			tags.add(tag.getName());
+		}
+		return new ImageDetail(image, tags);
+	}
+
+	// The method fetches one page of the images with the given tags, e.g. for the
+	// page of a tag
+	// With 'matchAll' an image needs all of the tags, otherwise any one of them;
+	// tags which do not exist match no image
+	// The images are ordered from the newest to the oldest by id, the cursors are the
+	// ids of the first and last image of the neighbouring pages
+	@Transactional(readOnly = true)
+	public ImagePage searchImagesByTags(Collection<String> tagNames, boolean matchAll, String after, String before, Integer size) {
+		int limit = size == null || size < 1 ? defaultPageSize : Math.min(size, maxPageSize);
+		Set<String> names = TagService.normalizeTagNames(tagNames);
+		List<Integer> tagIds = new ArrayList<>();
+		for (Tag tag : tagRepository.findTags(names)) {
+			tagIds.add(tag.getId());
+		}
+		if (tagIds.isEmpty() || (matchAll && tagIds.size() < names.size())) {
+			return new ImagePage(new ArrayList<>(), null, null);
+		}
+
+		Integer afterCursor = parseIdCursor(after);
+		Integer beforeCursor = afterCursor == null ? parseIdCursor(before) : null;
+		boolean backward = beforeCursor != null;
+
+		//A single tag needs no grouping, so it is always looked up as 'any'
+		List<Integer> imageIds = new ArrayList<>(imageRepository.getImageIdsByTags(tagIds, matchAll && tagIds.size() > 1,
+				backward ? beforeCursor : afterCursor, backward, limit));
+		boolean hasMore = imageIds.size() > limit;
+		if (hasMore) {
+			imageIds.remove(limit);
+		}
+		List<ImageSummary> images = imageRepository.getImageSummaries(imageIds);
+		if (images.isEmpty()) {
+			return new ImagePage(images, null, null);
+		}
+
+		boolean hasNext = backward || hasMore;
+		boolean hasPrev = backward ? hasMore : afterCursor != null;
+		String nextCursor = hasNext ? images.get(images.size() - 1).getId().toString() : null;
+		String prevCursor = hasPrev ? images.get(0).getId().toString() : null;
+		return new ImagePage(images, nextCursor, prevCursor);
+	}
+
 	// The method calls the createImage() method in the Repository and passes the
 	// image to be persisted in the database
+	// The image is added to the full-text search in the same transaction
+	// The renditions of the image are generated in the background afterwards
+	@Transactional
 	public void uploadImage(Image image) {
 		imageRepository.uploadImage(image);
+		searchService.indexImage(image.getId());
+		requestMissingRenditions(image);
+		eventPublisher.publishEvent(new ImageChangedEvent(image.getId(), true));
+	}
+
+	// The method uploads many images in one transaction, e.g. for a bulk import
+	// The images and their tags are inserted in JDBC batches, and they are added to
+	// the full-text search with one statement for all of them; the caller decides how
+	// many images a transaction holds
+	// The renditions of the images are generated in the background afterwards
+	@Transactional
+	public void uploadImages(List<Image> images) {
+		imageRepository.uploadImages(images);
+		List<Integer> imageIds = new ArrayList<>();
+		for (Image image : images) {
+			imageIds.add(image.getId());
+		}
+		searchService.indexImages(imageIds);
+		for (Image image : images) {
+			requestMissingRenditions(image);
+			eventPublisher.publishEvent(new ImageChangedEvent(image.getId(), true));
+		}
 	}
 
 	// The method calls the getImageByTitle() method in the Repository and passes
 	// the title of the image to be fetched
+	@Transactional(readOnly = true)
 	public Image getImageByIDorTitle(Integer id, String title) {
 		return imageRepository.getImageByIDorTitle(id, title);
 	}
 
+	// Returns true if an image with the given id exists, without loading it
+	@Transactional(readOnly = true)
+	public boolean imageExists(Integer imageId) {
+		return imageRepository.imageExists(imageId);
+	}
+
 	// The method calls the getImage() method in the Repository and passes the id of
 	// the image to be fetched
+	@Transactional(readOnly = true)
 	public Image getImage(Integer imageId) {
 		return imageRepository.getImage(imageId);
 	}
 
-	// The method calls the updateImage() method in the Repository and passes the
-	// Image to be updated in the database
-	public void updateImage(Image updatedImage) {
-		imageRepository.updateImage(updatedImage);
+	// The method applies the edit of an image to the image loaded in the
+	// transaction, so that only the columns which actually change are written
+	// (Image is mapped with @DynamicUpdate)
+	// 'changes' holds the new title and description, and the new content if
+	// 'newContent' is true (see storeImageData()); otherwise the content columns are
+	// not part of the update
+	// The set of tags is changed in place, so that only the rows of images_tags of
+	// the tags which were added or removed are written, in one JDBC batch; the
+	// words of the title and the description in the search vector are only
+	// recomputed if one of them changed, the words of the comments are kept
+	// The renditions are generated in the background if the content has changed
+	@Transactional
+	public Image updateImage(Integer imageId, Image changes, List<Tag> tags, boolean newContent) {
+		Image image = imageRepository.getImage(imageId);
+		boolean textChanged = !Objects.equals(image.getTitle(), changes.getTitle())
+				|| !Objects.equals(image.getDescription(), changes.getDescription());
+		image.setTitle(changes.getTitle());
+		image.setDescription(changes.getDescription());
+		image.setDate(new Date());
+		image.getTags().retainAll(tags);
+		image.getTags().addAll(tags);
+		if (newContent) {
+			image.setImageKey(changes.getImageKey());
+			image.setImageSize(changes.getImageSize());
+			image.setMimeType(changes.getMimeType());
+			image.setImageFile(null);
+			image.setThumbnailKey(null);
+			image.setMediumKey(null);
+		}
+
+		if (textChanged) {
+			searchService.indexImageText(imageId);
+		}
+		requestMissingRenditions(image);
+		eventPublisher.publishEvent(new ImageChangedEvent(imageId, true));
+		return image;
 	}
 
 	// The method calls the deleteImage() method in the Repository and passes the
 	// Image id of the image to be deleted in the database
+	// The image leaves the full-text search together with its row
+	@Transactional
 	public void deleteImage(Integer imageId) {
 		imageRepository.deleteImage(imageId);
+		eventPublisher.publishEvent(new ImageChangedEvent(imageId, true));
+	}
+
+	// Calling the method to confirm if the user with the said id is the owner of
+	// the image or not
+	@Transactional(readOnly = true)
+	public boolean confirmOwner(Integer id, Integer userId) {
+		return this.imageRepository.confirmOwner(id, userId);
+	}
+
+	// The method streams the content of the image to the blob store and records the
+	// key, size and type of the stored content on the image
+	// The type is detected from the first bytes of the content, a type given by the
+	// client is not trusted
+	// Throws UnsupportedImageTypeException if the content is not a JPEG, PNG, GIF or
+	// WebP image, and BlobTooLargeException if the content is larger than the
+	// configured maximum upload size; nothing is stored in either case
+	// The renditions of the previous content no longer apply and are cleared
+	// The size of every stored upload is recorded as imagehoster.upload.bytes
+	public void storeImageData(Image image, InputStream data) throws IOException {
+		InputStream content = new BufferedInputStream(data);
+		String mimeType = ImageTypes.detect(content);
+		if (mimeType == null) {
+			throw new UnsupportedImageTypeException();
+		}
+		StoredBlob blob = blobStore.put(content, maxUploadSize);
+		DistributionSummary.builder("imagehoster.upload.bytes").baseUnit("bytes").register(meterRegistry)
+				.record(blob.getSize());
+		image.setImageKey(blob.getKey());
+		image.setImageSize(blob.getSize());
+		image.setMimeType(mimeType);
+		image.setImageFile(null);
+		image.setThumbnailKey(null);
+		image.setMediumKey(null);
+	}
+
+	// Returns the content of the image from the blob store
+	// Images which are not migrated yet are served from their base64 data
+	// Returns null if the image has no content at all
+	public Resource getImageData(Image image) throws IOException {
+		if (image.getImageKey() != null) {
+			return new InputStreamResource(blobStore.open(image.getImageKey()));
+		}
+		if (image.getImageFile() != null) {
+			return new ByteArrayResource(Base64.getDecoder().decode(image.getImageFile()));
+		}
+		return null;
+	}
+
+	// Returns the content of the requested rendition ("thumbnail" or "medium") of the
+	// image, or of the original if no rendition is requested or it is not generated yet
+	// Returns null if no image is found in the database
+	@Transactional(readOnly = true)
+	public ImageContent getImageContent(Integer imageId, String variant) throws IOException {
+		ImageContent content = imageRepository.getImageContent(imageId);
+		if (content == null || variant == null) {
+			return content;
+		}
+
+		String variantKey = "thumbnail".equals(variant) ? content.getThumbnailKey()
+				: "medium".equals(variant) ? content.getMediumKey() : null;
+		if (variantKey == null || variantKey.equals(content.getImageKey())) {
+			return content;
+		}
+		//Renditions are always encoded as JPEG
+		return new ImageContent(imageId, variantKey, blobStore.size(variantKey), "image/jpeg");
+	}
+
+	// Returns the path of the content of the image on the local disk, or null if the
+	// blob store does not keep it as a local file
+	public Path getImageDataPath(ImageContent content) {
+		return blobStore.getLocalPath(content.getImageKey());
+	}
+
+	// Opens the content of the image in the blob store for reading
+	public InputStream openImageData(ImageContent content) throws IOException {
+		return blobStore.open(content.getImageKey());
+	}
+
+	private String cursorOf(ImageSummary image) {
+		return new PageCursor(image.getDate(), image.getId()).toString();
 	}
 
-	// Calling the method to confirm if the current user is the owner of the image or not
-	public boolean confirmOwner(Integer id, String userName) {
-		return this.imageRepository.confirmOwner(id, userName);
+	// Returns the image id in the cursor, or null if the cursor is empty or not a number
+	private Integer parseIdCursor(String cursor) {
+		if (cursor == null || cursor.isEmpty()) {
+			return null;
+		}
+		try {
+			return Integer.valueOf(cursor);
+		} catch (NumberFormatException e) {
+			return null;
+		}
 	}
 
-	// Calling the method to create a comment and saving it in the repository
-	public Comment createComment(Comment comment) {
-		return this.imageRepository.createComment(comment);
+	private void requestMissingRenditions(Image image) {
+		if (image.getId() != null && image.getImageKey() != null && image.getThumbnailKey() == null) {
+			renditionService.requestRenditions(image.getId(), image.getImageKey());
+		}
 	}
 }
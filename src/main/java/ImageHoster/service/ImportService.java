@@ -0,0 +1,42 @@
+package ImageHoster.service;
+
+import ImageHoster.model.Image;
+import ImageHoster.repository.ImportRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//Writes the images of the bulk import (see ImageImportRunner) together with the record of the files they were read from
+//Both are written in one transaction, so a file is recorded as imported if and only if its image exists
+@Service
+public class ImportService {
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private ImportRepository importRepository;
+
+    //Returns the paths of the files of the source which have been imported
+    @Transactional(readOnly = true)
+    public Set<String> getImportedPaths(String source) {
+        return new HashSet<>(importRepository.getImportedPaths(source));
+    }
+
+    //Uploads the images with ImageService.uploadImages() and records the files of the source they were read from, paths.get(i) being the file of images.get(i)
+    @Transactional
+    public void importImages(String source, List<Image> images, List<String> paths) {
+        imageService.uploadImages(images);
+        Map<String, Integer> imageIdsByPath = new LinkedHashMap<>();
+        for (int i = 0; i < images.size(); i++) {
+            imageIdsByPath.put(paths.get(i), images.get(i).getId());
+        }
+        importRepository.recordImports(source, imageIdsByPath);
+    }
+}
@@ -0,0 +1,122 @@
+package ImageHoster.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Cache of rendered pages, filled by the PageCacheFilter
+//An entry expires after the configured time to live, and is invalidated as soon as the image it shows changes
+//The invalidation happens once the change is committed; a page rendered from the data before the change is not stored afterwards, see put()
+@Component
+public class PageCache {
+
+    @Value("${imagehoster.pagecache.ttl-ms}")
+    private long ttlMillis;
+
+    @Value("${imagehoster.pagecache.max-entries}")
+    private int maxEntries;
+
+    //Most recently used pages by key
+    private Map<String, CachedPage> pages;
+
+    //Incremented by every invalidation
+    private final AtomicLong generation = new AtomicLong();
+
+    @PostConstruct
+    public void initCache() {
+        pages = Collections.synchronizedMap(new LinkedHashMap<String, CachedPage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedPage> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    //Returns the current generation, to be passed to put() by a request which renders a page
+    public long generation() {
+        return generation.get();
+    }
+
+    //Returns the cached page with the given key, or null if there is none or it has expired
+    public CachedPage get(String key) {
+        CachedPage page = pages.get(key);
+        if (page != null && page.getExpiresAt() <= System.currentTimeMillis()) {
+            pages.remove(key, page);
+            return null;
+        }
+        return page;
+    }
+
+    //Stores the page, unless an invalidation happened after the rendering started at the given generation
+    //The page might show data from before the invalidation in that case
+    //'imageId' is the image the page shows, or null for a page of the gallery
+    public void put(String key, Integer imageId, byte[] body, String contentType, String etag, long lastModified, long generationAtStart) {
+        synchronized (pages) {
+            if (generation.get() == generationAtStart) {
+                pages.put(key, new CachedPage(imageId, body, contentType, etag, lastModified, lastModified + ttlMillis));
+            }
+        }
+    }
+
+    //Drops the pages of the changed image, and the pages of the gallery if they show the change
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onImageChanged(ImageChangedEvent event) {
+        synchronized (pages) {
+            generation.incrementAndGet();
+            pages.values().removeIf(page -> page.getImageId() == null ? event.isGalleryChanged() : page.getImageId().equals(event.getImageId()));
+        }
+    }
+
+    //A rendered page together with the validators sent to the clients
+    public static class CachedPage {
+
+        private final Integer imageId;
+
+        private final byte[] body;
+
+        private final String contentType;
+
+        private final String etag;
+
+        private final long lastModified;
+
+        private final long expiresAt;
+
+        CachedPage(Integer imageId, byte[] body, String contentType, String etag, long lastModified, long expiresAt) {
+            this.imageId = imageId;
+            this.body = body;
+            this.contentType = contentType;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expiresAt = expiresAt;
+        }
+
+        public Integer getImageId() {
+            return imageId;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package ImageHoster.service;
+
+import ImageHoster.model.Image;
+import ImageHoster.repository.ImageRepository;
+import ImageHoster.storage.BlobStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Generates the downscaled renditions (thumbnail and medium size) of the uploaded images
+//The work is done by a fixed number of background workers with a bounded queue, so a burst of uploads never ties up the request threads
+//If the queue is full the image is skipped, the periodic sweep picks up every image whose renditions are still missing
+//An image whose renditions cannot be generated keeps the original as its renditions, so it is not picked up again
+//Until the renditions exist, the pages fall back to the original image
+@Service
+public class RenditionService {
+
+    private static final Logger log = LoggerFactory.getLogger(RenditionService.class);
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${imagehoster.renditions.workers}")
+    private int workers;
+
+    @Value("${imagehoster.renditions.queue-capacity}")
+    private int queueCapacity;
+
+    @Value("${imagehoster.renditions.thumbnail-width}")
+    private int thumbnailWidth;
+
+    @Value("${imagehoster.renditions.medium-width}")
+    private int mediumWidth;
+
+    @Value("${imagehoster.renditions.jpeg-quality}")
+    private float jpegQuality;
+
+    @Value("${imagehoster.renditions.max-pixels}")
+    private long maxPixels;
+
+    private ThreadPoolExecutor executor;
+
+    //Images which are queued or being processed, so that the sweep does not queue them a second time
+    private final Set<Integer> pending = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "rendition-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        };
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    //Queues the generation of the renditions of the image with the given content
+    //When called inside a transaction the image is queued once the transaction has committed, so that the workers see the image
+    //Returns immediately; returns false if the queue is full and the image is left to the sweep
+    public boolean requestRenditions(Integer imageId, String imageKey) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    queueRenditions(imageId, imageKey);
+                }
+            });
+            return true;
+        }
+        return queueRenditions(imageId, imageKey);
+    }
+
+    private boolean queueRenditions(Integer imageId, String imageKey) {
+        if (imageKey == null || !pending.add(imageId)) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generateRenditions(imageId, imageKey);
+                } finally {
+                    pending.remove(imageId);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(imageId);
+            log.info("Rendition queue is full, image {} is left to the sweep", imageId);
+            return false;
+        }
+    }
+
+    //Queues the images whose renditions are missing, e.g. because the queue was full or the application was stopped before they were generated
+    @Scheduled(initialDelayString = "${imagehoster.renditions.sweep-delay-ms}", fixedDelayString = "${imagehoster.renditions.sweep-delay-ms}")
+    public void sweepMissingRenditions() {
+        List<Object[]> missing = imageRepository.getImagesWithoutRenditions(queueCapacity);
+        for (Object[] row : missing) {
+            if (executor.getQueue().remainingCapacity() == 0) {
+                return;
+            }
+            requestRenditions((Integer) row[0], (String) row[1]);
+        }
+    }
+
+    void generateRenditions(Integer imageId, String imageKey) {
+        try {
+            String[] keys = storeRenditions(imageKey);
+            recordRenditions(imageId, imageKey, keys[0], keys[1]);
+        } catch (IOException | RuntimeException e) {
+            if (executor.isShutdown()) {
+                //Interrupted by the shutdown, the sweep generates the renditions after the next start
+                log.info("Generating the renditions of image {} was interrupted by the shutdown", imageId);
+                return;
+            }
+            //The original is recorded as its own renditions, like for a format ImageIO cannot decode
+            //Otherwise the sweep would pick the image again on every run, and enough such images would keep it from ever reaching the newer ones
+            log.warn("Could not generate the renditions of image {}, the original is served instead", imageId, e);
+            try {
+                recordRenditions(imageId, imageKey, imageKey, imageKey);
+            } catch (RuntimeException recordFailure) {
+                log.warn("Could not record the missing renditions of image {}", imageId, recordFailure);
+            }
+        }
+    }
+
+    //Generates the renditions of a stored image on the calling thread and sets their keys on the image, before the image is persisted
+    //Used by the bulk import, which renders many images in parallel; the image is not queued for the workers afterwards
+    public void createRenditions(Image image) throws IOException {
+        String[] keys = storeRenditions(image.getImageKey());
+        image.setThumbnailKey(keys[0]);
+        image.setMediumKey(keys[1]);
+    }
+
+    //Decodes the original once and derives both renditions from it, returns the keys of the thumbnail and of the medium rendition
+    //The thumbnail is scaled from the medium rendition, which is cheaper than scaling from the original again
+    private String[] storeRenditions(String imageKey) throws IOException {
+        BufferedImage original = decode(imageKey);
+        if (original == null) {
+            //Not an image format ImageIO can decode or too large to decode, the original is served as it is
+            return new String[]{imageKey, imageKey};
+        }
+
+        BufferedImage medium = scaleToWidth(original, mediumWidth);
+        String mediumKey = medium == original ? imageKey : blobStore.put(encodeJpeg(medium)).getKey();
+
+        BufferedImage thumbnail = scaleToWidth(medium, thumbnailWidth);
+        String thumbnailKey = thumbnail == medium ? mediumKey : blobStore.put(encodeJpeg(thumbnail)).getKey();
+        return new String[]{thumbnailKey, mediumKey};
+    }
+
+    //Decodes the first frame of the image, returns null if ImageIO cannot decode it or if it has more than max-pixels pixels
+    //The size is read from the header before anything is decoded, a small upload can declare dimensions which would take gigabytes of heap once decoded
+    private BufferedImage decode(String imageKey) throws IOException {
+        try (InputStream in = blobStore.open(imageKey); ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    log.info("The content {} has {} pixels, renditions are generated for at most {}", imageKey, pixels, maxPixels);
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    //The pages showing the image have to be rendered again to use the renditions
+    private void recordRenditions(Integer imageId, String imageKey, String thumbnailKey, String mediumKey) {
+        imageRepository.setRenditions(imageId, imageKey, thumbnailKey, mediumKey);
+        eventPublisher.publishEvent(new ImageChangedEvent(imageId, true));
+    }
+
+    //Returns the image scaled down to the given width, or the image itself if it is not wider than that
+    //Scales in steps of at most one half with bilinear interpolation, which is fast and still avoids the aliasing of a single large step
+    private BufferedImage scaleToWidth(BufferedImage image, int width) {
+        if (image.getWidth() <= width) {
+            return image;
+        }
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            int currentHeight = Math.max(1, (int) Math.round((double) image.getHeight() * currentWidth / image.getWidth()));
+
+            //Drawing onto an opaque white canvas, so that transparent images are encoded as JPEG correctly
+            BufferedImage step = new BufferedImage(currentWidth, currentHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = step.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, currentWidth, currentHeight);
+            graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            graphics.dispose();
+            current = step;
+        } while (currentWidth > width);
+        return current;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(jpegQuality);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
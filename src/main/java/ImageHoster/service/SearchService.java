@@ -0,0 +1,121 @@
+package ImageHoster.service;
+
+import ImageHoster.model.Comment;
+import ImageHoster.model.ImagePage;
+import ImageHoster.model.ImageSummary;
+import ImageHoster.model.SearchCursor;
+import ImageHoster.repository.ImageRepository;
+import ImageHoster.repository.SearchRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+//Full-text search over the titles, descriptions and comments of the images
+//The index is kept up to date on write: ImageService indexes an image in the same transaction in which it is uploaded or its text is edited, CommentService adds the words of new comments
+//Deleted images leave the index together with their row
+@Service
+public class SearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchService.class);
+
+    @Autowired
+    private SearchRepository searchRepository;
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    //Name of the Postgres text search configuration, which decides about stemming and stop words
+    @Value("${imagehoster.search.config}")
+    private String config;
+
+    @Value("${imagehoster.gallery.page-size}")
+    private int defaultPageSize;
+
+    @Value("${imagehoster.gallery.max-page-size}")
+    private int maxPageSize;
+
+    //Indexes the images which are not indexed yet, once the application has started
+    @EventListener(ContextRefreshedEvent.class)
+    @Transactional
+    public void indexUnindexedImages() {
+        int indexed = searchRepository.indexUnindexedImages(config);
+        if (indexed > 0) {
+            log.info("Indexed {} images for the full-text search", indexed);
+        }
+    }
+
+    //Recomputes the search vector of the image, within the transaction of the caller
+    @Transactional
+    public void indexImage(Integer imageId) {
+        searchRepository.indexImage(imageId, config);
+    }
+
+    //Recomputes the search vectors of the images with one statement, within the transaction of the caller
+    @Transactional
+    public void indexImages(Collection<Integer> imageIds) {
+        if (!imageIds.isEmpty()) {
+            searchRepository.indexImages(imageIds, config);
+        }
+    }
+
+    //Recomputes the words of the title and the description of the image, within the transaction of the caller
+    @Transactional
+    public void indexImageText(Integer imageId) {
+        searchRepository.indexImageText(imageId, config);
+    }
+
+    //Adds the words of the new comments to the search vectors of their images, within the transaction of the caller
+    @Transactional
+    public void indexComments(List<Comment> comments) {
+        searchRepository.indexComments(comments, config);
+    }
+
+    //The method fetches one page of the images matching the text, from the best to the worst match
+    //'after' is the cursor of the next page; the ranked results can only be paged forward, so the page has no previous cursor
+    @Transactional(readOnly = true)
+    public ImagePage search(String text, String after, Integer size) {
+        int limit = size == null || size < 1 ? defaultPageSize : Math.min(size, maxPageSize);
+        if (text == null || text.trim().isEmpty()) {
+            return new ImagePage(new ArrayList<>(), null, null);
+        }
+        SearchCursor cursor = SearchCursor.parse(after);
+
+        List<Object[]> rows = new ArrayList<>(searchRepository.searchImages(text, config,
+                cursor != null ? cursor.getRank() : null, cursor != null ? cursor.getId() : null, limit));
+        boolean hasMore = rows.size() > limit;
+        if (hasMore) {
+            rows.remove(limit);
+        }
+
+        List<Integer> imageIds = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            imageIds.add(((Number) row[0]).intValue());
+        }
+        //The summaries come back by id, they are put back in the order of the ranking
+        Map<Integer, ImageSummary> summaries = new HashMap<>();
+        for (ImageSummary summary : imageRepository.getImageSummaries(imageIds)) {
+            summaries.put(summary.getId(), summary);
+        }
+        List<ImageSummary> images = new ArrayList<>(imageIds.size());
+        for (Integer imageId : imageIds) {
+            ImageSummary summary = summaries.get(imageId);
+            if (summary != null) {
+                images.add(summary);
+            }
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            Object[] last = rows.get(rows.size() - 1);
+            nextCursor = new SearchCursor(((Number) last[1]).floatValue(), ((Number) last[0]).intValue()).toString();
+        }
+        return new ImagePage(images, nextCursor, null);
+    }
+}
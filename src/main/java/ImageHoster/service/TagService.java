@@ -3,19 +3,120 @@ package ImageHoster.service;
 import ImageHoster.model.Tag;
 import ImageHoster.repository.TagRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-//No changes from the stub file
+import javax.annotation.PostConstruct;
+import java.util.*;
+
+//Resolves tag names to tags, creating the missing ones, with an in-process cache of the most recently used tags
 @Service
 public class TagService {
     @Autowired
     private TagRepository tagRepository;
 
+    @Value("${imagehoster.tags.cache-size}")
+    private int cacheSize;
+
+    //Most recently used tags by name, tags are never renamed or deleted so the entries never go stale
+    private Map<String, Tag> tagCache;
+
+    @PostConstruct
+    public void initCache() {
+        tagCache = Collections.synchronizedMap(new LinkedHashMap<String, Tag>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Tag> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    @Transactional(readOnly = true)
     public Tag getTagByName(String title) {
         return tagRepository.findTag(title);
     }
 
+    @Transactional
     public Tag createTag(Tag tag) {
         return tagRepository.createTag(tag);
     }
+
+    //Returns the tags with the given names, creating the ones which do not exist yet
+    //The names are trimmed, runs of whitespace are collapsed and empty or repeated names are dropped; the tags are returned in the order of the names
+    //Cached tags need no query at all, the others are looked up with one IN query and the missing ones inserted in one batch
+    @Transactional
+    public List<Tag> resolveTags(Collection<String> tagNames) {
+        Set<String> names = normalizeTagNames(tagNames);
+
+        Map<String, Tag> resolved = new HashMap<>();
+        List<String> uncached = new ArrayList<>();
+        for (String name : names) {
+            Tag tag = tagCache.get(name);
+            if (tag != null) {
+                resolved.put(name, tag);
+            } else {
+                uncached.add(name);
+            }
+        }
+
+        if (!uncached.isEmpty()) {
+            Map<String, Tag> loaded = new HashMap<>();
+            putByName(loaded, tagRepository.findTags(uncached));
+
+            List<String> missing = new ArrayList<>();
+            for (String name : uncached) {
+                if (!loaded.containsKey(name)) {
+                    missing.add(name);
+                }
+            }
+            if (!missing.isEmpty()) {
+                tagRepository.insertTags(missing);
+                putByName(loaded, tagRepository.findTags(missing));
+            }
+
+            resolved.putAll(loaded);
+            cacheAfterCommit(loaded);
+        }
+
+        List<Tag> tags = new ArrayList<>(names.size());
+        for (String name : names) {
+            tags.add(resolved.get(name));
+        }
+        return tags;
+    }
+
+    //Trims the names, collapses runs of whitespace and drops empty and repeated names, keeping the order of the names
+    public static Set<String> normalizeTagNames(Collection<String> tagNames) {
+        Set<String> names = new LinkedHashSet<>();
+        for (String tagName : tagNames) {
+            String name = tagName.trim().replaceAll("\\s+", " ");
+            if (!name.isEmpty()) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    private void putByName(Map<String, Tag> tags, List<Tag> found) {
+        for (Tag tag : found) {
+            tags.put(tag.getName(), tag);
+        }
+    }
+
+    //Tags inserted by a transaction which is rolled back must never be served from the cache
+    private void cacheAfterCommit(Map<String, Tag> tags) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            tagCache.putAll(tags);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                tagCache.putAll(tags);
+            }
+        });
+    }
 }
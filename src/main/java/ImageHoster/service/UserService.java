@@ -4,6 +4,7 @@ import ImageHoster.model.User;
 import ImageHoster.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -15,6 +16,7 @@ public class UserService {
     private UserRepository userRepository;
 
     //Call the registerUser() method in the UserRepository class to persist the user record in the database
+    @Transactional
     public boolean registerUser(User newUser) {
 
     	//Checking if the password is valid or not
@@ -25,6 +27,18 @@ public class UserService {
         else return false;
     }
 
+    //Checking if the username is already registered, the usernames are unique
+    @Transactional(readOnly = true)
+    public boolean isUsernameTaken(String username) {
+        return userRepository.isUsernameTaken(username);
+    }
+
+    //Returns the user with the given username, or null if there is none
+    @Transactional(readOnly = true)
+    public User getUser(String username) {
+        return userRepository.getUser(username);
+    }
+
     //Since we did not have any user in the database, therefore the user with username 'upgrad' and password 'password' was hard-coded
     //This method returned true if the username was 'upgrad' and password is 'password'
     //But now let us change the implementation of this method
@@ -32,6 +46,7 @@ public class UserService {
     //Calls the checkUser() method in the Repository passing the username and password which checks the username and password in the database
     //The Repository returns User type object if user with entered username and password exists in the database
     //Else returns null
+    @Transactional(readOnly = true)
     public User login(User user) {
         User existingUser = userRepository.checkUser(user.getUsername(), user.getPassword());
         if (existingUser != null) {
@@ -0,0 +1,35 @@
+package ImageHoster.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+//Storage for the binary content of the images
+//Blobs are addressed by the SHA-256 hash of their content, so storing the same bytes twice yields the same key and only one copy
+//The local filesystem implementation is the default, any other backend (e.g. an S3 compatible store) only has to implement this interface
+public interface BlobStore {
+
+    //Stores the content and returns the key and the size of the stored blob
+    StoredBlob put(byte[] content) throws IOException;
+
+    //Stores the content read from the stream and returns the key and the size of the stored blob
+    //The content is copied in chunks, so it is never held on the heap as a whole; the hash and size are computed while copying
+    //Throws BlobTooLargeException as soon as more than maxSize bytes are read, nothing is stored in that case
+    StoredBlob put(InputStream content, long maxSize) throws IOException;
+
+    //Opens the blob with the given key for reading
+    //The caller is responsible for closing the returned stream
+    InputStream open(String key) throws IOException;
+
+    //Returns true if a blob with the given key is present in the store
+    boolean exists(String key);
+
+    //Returns the size of the blob with the given key in bytes
+    long size(String key) throws IOException;
+
+    //Returns the path of the blob if the store keeps it as a file on the local disk, so that it can be sent with zero-copy file transfer
+    //Returns null for stores which are not backed by the local filesystem
+    default Path getLocalPath(String key) {
+        return null;
+    }
+}
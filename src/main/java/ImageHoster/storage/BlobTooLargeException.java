@@ -0,0 +1,20 @@
+package ImageHoster.storage;
+
+import java.io.IOException;
+
+//Thrown by the BlobStore when streamed content is larger than the allowed size
+public class BlobTooLargeException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long maxSize;
+
+    public BlobTooLargeException(long maxSize) {
+        super("Content is larger than " + maxSize + " bytes");
+        this.maxSize = maxSize;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+}
@@ -0,0 +1,77 @@
+package ImageHoster.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+//The raster image types which are accepted as image content, detected from the first bytes of the content
+//The type sent by the client or derived from a file name is never trusted, content such as HTML or SVG would run scripts in the origin of the site when it is served
+public final class ImageTypes {
+
+    //Sent for stored content which is not one of the accepted types, browsers do not render it
+    public static final String UNKNOWN = "application/octet-stream";
+
+    //The number of bytes needed to detect the type
+    public static final int HEADER_LENGTH = 12;
+
+    private static final Set<String> ALLOWED = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "image/jpeg", "image/png", "image/gif", "image/webp")));
+
+    private ImageTypes() {
+    }
+
+    //Returns true if the type is one of the accepted raster types
+    public static boolean isAllowed(String mimeType) {
+        return mimeType != null && ALLOWED.contains(mimeType);
+    }
+
+    //Returns the type of the content, or null if it is not one of the accepted types
+    public static String detect(byte[] header, int length) {
+        if (startsWith(header, length, 0, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (startsWith(header, length, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return "image/png";
+        }
+        if (startsWith(header, length, 0, 'G', 'I', 'F', '8', '7', 'a') || startsWith(header, length, 0, 'G', 'I', 'F', '8', '9', 'a')) {
+            return "image/gif";
+        }
+        if (startsWith(header, length, 0, 'R', 'I', 'F', 'F') && startsWith(header, length, 8, 'W', 'E', 'B', 'P')) {
+            return "image/webp";
+        }
+        return null;
+    }
+
+    public static String detect(byte[] content) {
+        return detect(content, content.length);
+    }
+
+    //Reads the type from the start of the stream and resets the stream, so the content can be read from the first byte afterwards
+    //The stream must support mark(), e.g. a BufferedInputStream
+    public static String detect(InputStream content) throws IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+        content.mark(HEADER_LENGTH);
+        int length = 0;
+        int read;
+        while (length < HEADER_LENGTH && (read = content.read(header, length, HEADER_LENGTH - length)) != -1) {
+            length += read;
+        }
+        content.reset();
+        return detect(header, length);
+    }
+
+    private static boolean startsWith(byte[] header, int length, int offset, int... signature) {
+        if (length < offset + signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if ((header[offset + i] & 0xFF) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
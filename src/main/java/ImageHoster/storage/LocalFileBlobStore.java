@@ -0,0 +1,138 @@
+package ImageHoster.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.regex.Pattern;
+
+//BlobStore keeping every blob as a file below the configured root directory
+//The files are spread over two levels of sub directories (ab/cd/abcd...) so that no single directory grows too large
+@Component
+public class LocalFileBlobStore implements BlobStore {
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    //Size of the buffer used to copy streamed content, the memory needed per upload does not depend on the size of the upload
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path root;
+
+    //Directory of the blobs being written, on the same filesystem as the blobs so that they can be moved into place atomically
+    private final Path tempDirectory;
+
+    public LocalFileBlobStore(@Value("${imagehoster.storage.local.root}") String root) throws IOException {
+        this.root = Paths.get(root).toAbsolutePath();
+        this.tempDirectory = this.root.resolve("tmp");
+        Files.createDirectories(this.tempDirectory);
+    }
+
+    @Override
+    public StoredBlob put(byte[] content) throws IOException {
+        MessageDigest digest = sha256();
+        String key = toHex(digest.digest(content));
+        Path target = resolve(key);
+
+        //Same content means same key, so there is nothing to write if the blob already exists
+        if (!Files.exists(target)) {
+            //Writing to a temporary file first and moving it into place, so that readers never see a partially written blob
+            Path temp = Files.createTempFile(tempDirectory, "blob", ".tmp");
+            try {
+                Files.write(temp, content);
+                moveIntoPlace(temp, target);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        return new StoredBlob(key, content.length);
+    }
+
+    @Override
+    public StoredBlob put(InputStream content, long maxSize) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long size = 0;
+
+        //The key is only known once all the content is read, so it is written to a temporary file and moved into place afterwards
+        Path temp = Files.createTempFile(tempDirectory, "blob", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                int read;
+                while ((read = content.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxSize) {
+                        throw new BlobTooLargeException(maxSize);
+                    }
+                    digest.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                }
+            }
+
+            String key = toHex(digest.digest());
+            Path target = resolve(key);
+            if (!Files.exists(target)) {
+                moveIntoPlace(temp, target);
+            }
+            return new StoredBlob(key, size);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(resolve(key));
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        return Files.size(resolve(key));
+    }
+
+    @Override
+    public Path getLocalPath(String key) {
+        return resolve(key);
+    }
+
+    //Maps the key to the path of the file, rejecting anything that is not a valid key so that a key can never point outside the root
+    private Path resolve(String key) {
+        if (key == null || !KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid blob key: " + key);
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    private void moveIntoPlace(Path temp, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] digest) {
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX[(digest[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[digest[i] & 0xf];
+        }
+        return new String(hex);
+    }
+}
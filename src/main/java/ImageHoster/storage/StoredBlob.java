@@ -0,0 +1,23 @@
+package ImageHoster.storage;
+
+//The result of storing a blob in the BlobStore
+//The key is the hex encoded SHA-256 hash of the content
+public class StoredBlob {
+
+    private final String key;
+
+    private final long size;
+
+    public StoredBlob(String key, long size) {
+        this.key = key;
+        this.size = size;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getSize() {
+        return size;
+    }
+}
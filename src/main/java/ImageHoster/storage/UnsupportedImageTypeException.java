@@ -0,0 +1,13 @@
+package ImageHoster.storage;
+
+import java.io.IOException;
+
+//Thrown when uploaded content is not one of the raster image types accepted by ImageTypes
+public class UnsupportedImageTypeException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UnsupportedImageTypeException() {
+        super("Content is not a JPEG, PNG, GIF or WebP image");
+    }
+}
@@ -0,0 +1,9 @@
+-- Turns the unique index of V9 into a constraint, which only takes a short lock since the index already exists
+-- A database updated by Hibernate before the migrations were introduced has the constraint already
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'tags_name_key') THEN
+        ALTER TABLE tags ADD CONSTRAINT tags_name_key UNIQUE USING INDEX tags_name_key;
+    END IF;
+END
+$$;
@@ -0,0 +1,9 @@
+-- The files written by the bulk import (ImageImportRunner), by the source they were read from and their path below it
+-- A row is inserted in the transaction which inserts its image, so an interrupted import is resumed with exactly the files which are missing
+-- No foreign key to images: an image deleted after its import stays imported and is not imported again
+CREATE TABLE image_imports (
+    source   varchar(1024) NOT NULL,
+    path     varchar(1024) NOT NULL,
+    image_id int4 NOT NULL,
+    PRIMARY KEY (source, path)
+);
@@ -0,0 +1,58 @@
+-- Schema of the original application, as Hibernate created it (hbm2ddl.auto=update) before the migrations were introduced
+-- Databases created that way are baselined at this version (spring.flyway.baseline-on-migrate), this script only runs on an empty database
+-- Everything the application added since is created by the later migrations, which also apply to baselined databases
+
+CREATE SEQUENCE hibernate_sequence START 1 INCREMENT 1;
+
+CREATE TABLE user_profile (
+    id            int4 NOT NULL,
+    email_address varchar(255),
+    full_name     varchar(255),
+    mobile_number varchar(255),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE users (
+    id         int4 NOT NULL,
+    password   varchar(255),
+    username   varchar(255),
+    profile_id int4,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE images (
+    id          int4 NOT NULL,
+    date        timestamp,
+    description varchar(255),
+    imagefile   text,
+    title       varchar(255),
+    user_id     int4,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE tags (
+    id   int4 NOT NULL,
+    name varchar(255),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE images_tags (
+    images_id int4 NOT NULL,
+    tags_id   int4 NOT NULL
+);
+
+CREATE TABLE comments (
+    id       int4 NOT NULL,
+    date     date,
+    text     text,
+    image_id int4,
+    user_id  int4,
+    PRIMARY KEY (id)
+);
+
+ALTER TABLE users ADD CONSTRAINT fko47sw84ajr24vfq4ccoha1256 FOREIGN KEY (profile_id) REFERENCES user_profile;
+ALTER TABLE images ADD CONSTRAINT fk13ljqfrfwbyvnsdhihwta8cpr FOREIGN KEY (user_id) REFERENCES users;
+ALTER TABLE images_tags ADD CONSTRAINT fktr5ixprfwwbq8u50gj470tkgv FOREIGN KEY (tags_id) REFERENCES tags;
+ALTER TABLE images_tags ADD CONSTRAINT fkgsj11feci341byyrilwywpe47 FOREIGN KEY (images_id) REFERENCES images;
+ALTER TABLE comments ADD CONSTRAINT fk3kt8ac5im9y7pc9908f3b4i1j FOREIGN KEY (image_id) REFERENCES images;
+ALTER TABLE comments ADD CONSTRAINT fk8omq0tc18jd43bu5tjh6jvraq FOREIGN KEY (user_id) REFERENCES users;
@@ -0,0 +1,10 @@
+-- Indexes for the lookups which had none
+-- Built with CONCURRENTLY, so that the tables stay writable while the indexes are built on a live database; Flyway runs this migration outside of a transaction
+-- If the migration fails (e.g. because of duplicate user names), the index is left INVALID: drop it, fix the cause, then run 'flyway repair' before starting again
+
+-- Login and registration look the users up by their name, which has to be unique; see V3 for the constraint
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS users_username_key ON users (username);
+
+-- The images and comments of a user, e.g. when the user is deleted, and the checks of the foreign keys on deleting a user
+CREATE INDEX CONCURRENTLY IF NOT EXISTS images_user_id_idx ON images (user_id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS comments_user_id_idx ON comments (user_id);
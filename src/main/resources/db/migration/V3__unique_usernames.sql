@@ -0,0 +1,2 @@
+-- Turns the unique index of V2 into a constraint, which only takes a short lock since the index already exists
+ALTER TABLE users ADD CONSTRAINT users_username_key UNIQUE USING INDEX users_username_key;
@@ -0,0 +1,5 @@
+-- The tags of an image are a set from now on, see V5 and V6 for the primary key of images_tags
+-- As a list they could hold the same tag twice; the repeated rows are dropped, keeping one row per image and tag
+DELETE FROM images_tags a
+    USING images_tags b
+    WHERE a.images_id = b.images_id AND a.tags_id = b.tags_id AND a.ctid > b.ctid;
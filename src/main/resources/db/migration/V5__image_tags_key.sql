@@ -0,0 +1,3 @@
+-- Unique index on (images_id, tags_id), which V6 turns into the primary key of images_tags
+-- Built with CONCURRENTLY like the indexes of V2, so Flyway runs this migration outside of a transaction
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS images_tags_pkey ON images_tags (images_id, tags_id);
@@ -0,0 +1,3 @@
+-- Makes the unique index of V5 the primary key of images_tags, which takes only a short lock since the index already exists
+-- The key identifies the row Hibernate deletes when a tag is removed from an image, and loads the tags of an image in order of images_id
+ALTER TABLE images_tags ADD CONSTRAINT images_tags_pkey PRIMARY KEY USING INDEX images_tags_pkey;
@@ -0,0 +1,21 @@
+-- A sequence per table instead of the single hibernate_sequence, so that the tables no longer share one counter
+-- Each call hands out a block of 50 ids: Hibernate uses the returned value and the 49 after it (pooled-lo optimizer, see persistence.xml)
+-- Rows inserted with plain SQL take their id from the same block through Hibernate (EntityIds), or call nextval() for one id, which skips the rest of that block
+-- The sequences start after the highest id in use, all of which came from hibernate_sequence
+
+CREATE SEQUENCE user_profile_id_seq INCREMENT 50;
+SELECT setval('user_profile_id_seq', COALESCE((SELECT MAX(id) FROM user_profile), 0) + 1, false);
+
+CREATE SEQUENCE users_id_seq INCREMENT 50;
+SELECT setval('users_id_seq', COALESCE((SELECT MAX(id) FROM users), 0) + 1, false);
+
+CREATE SEQUENCE images_id_seq INCREMENT 50;
+SELECT setval('images_id_seq', COALESCE((SELECT MAX(id) FROM images), 0) + 1, false);
+
+CREATE SEQUENCE tags_id_seq INCREMENT 50;
+SELECT setval('tags_id_seq', COALESCE((SELECT MAX(id) FROM tags), 0) + 1, false);
+
+CREATE SEQUENCE comments_id_seq INCREMENT 50;
+SELECT setval('comments_id_seq', COALESCE((SELECT MAX(id) FROM comments), 0) + 1, false);
+
+DROP SEQUENCE hibernate_sequence;
@@ -0,0 +1,27 @@
+-- Columns which the application gained while Hibernate still updated the schema (hbm2ddl.auto=update), before the migrations were introduced
+-- A database updated by Hibernate at that time already has them, one created by the original application is baselined at V1 without them; IF NOT EXISTS gives both the same schema
+
+-- Content in the blob store and its renditions, the base64 data in imagefile is only kept for the images not migrated yet
+ALTER TABLE images ADD COLUMN IF NOT EXISTS image_key     varchar(64);
+ALTER TABLE images ADD COLUMN IF NOT EXISTS image_size    int8;
+ALTER TABLE images ADD COLUMN IF NOT EXISTS mime_type     varchar(255);
+ALTER TABLE images ADD COLUMN IF NOT EXISTS thumbnail_key varchar(64);
+ALTER TABLE images ADD COLUMN IF NOT EXISTS medium_key    varchar(64);
+-- Counted at startup for the images which have none yet, see CommentService.countComments()
+ALTER TABLE images ADD COLUMN IF NOT EXISTS comment_count int4;
+-- Full-text search, written and read by SearchRepository only and not mapped on the Image entity; computed at startup for the images which have none yet
+ALTER TABLE images ADD COLUMN IF NOT EXISTS search_vector tsvector;
+
+-- The names of the tags are unique from V10 on
+-- A name the original application created twice (e.g. by two uploads at the same time) is merged into the tag with the lowest id
+INSERT INTO images_tags (images_id, tags_id)
+    SELECT it.images_id, keep.id
+    FROM images_tags it
+    JOIN tags dup ON dup.id = it.tags_id
+    JOIN (SELECT name, MIN(id) AS id FROM tags GROUP BY name) keep ON keep.name = dup.name AND keep.id <> dup.id
+    ON CONFLICT DO NOTHING;
+DELETE FROM images_tags it
+    USING tags dup
+    WHERE dup.id = it.tags_id AND EXISTS (SELECT 1 FROM tags t WHERE t.name = dup.name AND t.id < dup.id);
+DELETE FROM tags dup
+    WHERE EXISTS (SELECT 1 FROM tags t WHERE t.name = dup.name AND t.id < dup.id);
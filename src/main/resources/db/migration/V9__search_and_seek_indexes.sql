@@ -0,0 +1,13 @@
+-- Indexes the application gained before the migrations were introduced, created here for the databases baselined at V1
+-- Built with CONCURRENTLY like the indexes of V2, so Flyway runs this migration outside of a transaction; IF NOT EXISTS skips the ones a database already has
+
+-- Gallery pages, seeking on (date, id)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS images_date_id_idx ON images (date, id);
+-- Images of a tag
+CREATE INDEX CONCURRENTLY IF NOT EXISTS images_tags_tags_id_images_id_idx ON images_tags (tags_id, images_id);
+-- Pages of the comments of an image, seeking on (date, id)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS comments_image_id_date_id_idx ON comments (image_id, date, id);
+-- Full-text search
+CREATE INDEX CONCURRENTLY IF NOT EXISTS images_search_vector_idx ON images USING GIN (search_vector);
+-- Tags are looked up by their name, which has to be unique; see V10 for the constraint
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS tags_name_key ON tags (name);
@@ -0,0 +1,230 @@
+package ImageHoster.controller;
+
+import ImageHoster.model.ImageContent;
+import ImageHoster.service.ImageService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+//Checks the conditional and range requests of the raw image endpoint, with the content served from a file by an ImageService which knows a single image
+public class ImageFileControllerTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    private static final String KEY = "c0ffee";
+
+    private static final String ETAG = "\"" + KEY + "\"";
+
+    private Path file;
+
+    private String mimeType = "image/png";
+
+    private ImageFileController controller;
+
+    @Before
+    public void createController() throws IOException {
+        file = Files.createTempFile("image-file-controller-test", ".png");
+        Files.write(file, CONTENT);
+        controller = new ImageFileController();
+        ReflectionTestUtils.setField(controller, "imageService", new SingleImageService());
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    //This test checks that a plain request gets the whole content with its ETag, and the headers which keep browsers from running the content
+    @Test
+    public void sendsWholeContent() throws IOException {
+        MockHttpServletResponse response = get(request());
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+        assertEquals(ETAG, response.getHeader("ETag"));
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertEquals("image/png", response.getContentType());
+        assertEquals("nosniff", response.getHeader("X-Content-Type-Options"));
+        assertEquals("default-src 'none'; sandbox", response.getHeader("Content-Security-Policy"));
+        assertNull(response.getHeader("Content-Disposition"));
+    }
+
+    //This test checks that a request with the current ETag in If-None-Match gets 304 without a body
+    @Test
+    public void answersMatchingETagWithNotModified() throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader("If-None-Match", ETAG);
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    //This test checks that a request with an older ETag in If-None-Match gets the whole content
+    @Test
+    public void sendsContentForStaleETag() throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader("If-None-Match", "\"0ld\"");
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+    }
+
+    //This test checks that a single range gets 206 with the bytes of the range and their position in Content-Range
+    @Test
+    public void sendsSingleRange() throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader("Range", "bytes=2-5");
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 2-5/10", response.getHeader("Content-Range"));
+        assertEquals(4, response.getContentLengthLong());
+        assertArrayEquals("2345".getBytes(StandardCharsets.US_ASCII), response.getContentAsByteArray());
+    }
+
+    //This test checks that a suffix range gets the last bytes of the content
+    @Test
+    public void sendsSuffixRange() throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader("Range", "bytes=-3");
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 7-9/10", response.getHeader("Content-Range"));
+        assertArrayEquals("789".getBytes(StandardCharsets.US_ASCII), response.getContentAsByteArray());
+    }
+
+    //This test checks that several ranges get the whole content with 200 instead of a multipart response
+    @Test
+    public void sendsWholeContentForMultipleRanges() throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader("Range", "bytes=0-1,4-5");
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader("Content-Range"));
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+    }
+
+    //This test checks that a range starting past the end of the content gets 416 with the length of the content
+    @Test
+    public void rejectsUnsatisfiableRange() throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader("Range", "bytes=10-20");
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader("Content-Range"));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    //This test checks that a malformed Range header gets 416
+    @Test
+    public void rejectsMalformedRange() throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader("Range", "bytes=five-");
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */10", response.getHeader("Content-Range"));
+    }
+
+    //This test checks that the range is sent if If-Range names the current ETag
+    @Test
+    public void sendsRangeForCurrentIfRange() throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader("Range", "bytes=0-1");
+        request.addHeader("If-Range", ETAG);
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(206, response.getStatus());
+        assertArrayEquals("01".getBytes(StandardCharsets.US_ASCII), response.getContentAsByteArray());
+    }
+
+    //This test checks that a stale If-Range, i.e. the client holds part of an older content, gets the whole current content with 200
+    @Test
+    public void sendsWholeContentForStaleIfRange() throws IOException {
+        MockHttpServletRequest request = request();
+        request.addHeader("Range", "bytes=0-1");
+        request.addHeader("If-Range", "\"0ld\"");
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader("Content-Range"));
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+    }
+
+    //This test checks that with sendfile support the range of the file is handed to Tomcat instead of being written by the controller
+    @Test
+    public void handsRangeToSendfile() throws IOException {
+        MockHttpServletRequest request = request();
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        request.addHeader("Range", "bytes=2-5");
+        MockHttpServletResponse response = get(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(file.toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(2L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(6L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    //This test checks that content stored with a type which is not an accepted raster type is sent as a download
+    @Test
+    public void sendsUnknownTypeAsDownload() throws IOException {
+        mimeType = "text/html";
+        MockHttpServletResponse response = get(request());
+
+        assertEquals("application/octet-stream", response.getContentType());
+        assertEquals("attachment", response.getHeader("Content-Disposition"));
+        assertEquals("nosniff", response.getHeader("X-Content-Type-Options"));
+    }
+
+    //This test checks that an unknown image gets 404
+    @Test
+    public void answersUnknownImageWithNotFound() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/2/raw");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.getImageFile(2, null, null, request, response);
+
+        assertEquals(404, response.getStatus());
+    }
+
+    private MockHttpServletRequest request() {
+        return new MockHttpServletRequest("GET", "/images/1/raw");
+    }
+
+    private MockHttpServletResponse get(MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.getImageFile(1, null, null, request, response);
+        return response;
+    }
+
+    //Knows the image with id 1, whose content is the file of the test
+    private class SingleImageService extends ImageService {
+
+        @Override
+        public ImageContent getImageContent(Integer imageId, String variant) {
+            return imageId == 1 ? new ImageContent(1, KEY, (long) CONTENT.length, mimeType) : null;
+        }
+
+        @Override
+        public Path getImageDataPath(ImageContent content) {
+            return file;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package ImageHoster.repository;
+
+import ImageHoster.model.ImagePage;
+import ImageHoster.model.ImageSummary;
+import ImageHoster.model.PageCursor;
+import ImageHoster.service.ImageService;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+//Checks the keyset paging of the gallery through ImageService.getImagePage() and ImageRepository.getImagePage(): the order of the pages and the cursors of their links
+//The gallery of the TestDatabase is given seven images newer and five images older than any other, so that its first and last pages are known; the test is skipped without it
+//Two of the newest images share their date, the id decides their order
+public class ImagePageTest {
+
+    private static EntityManagerFactory entityManagerFactory;
+
+    private static Connection connection;
+
+    private static ImageService imageService;
+
+    private static TransactionTemplate transactionTemplate;
+
+    //The cursors of the seeded images in the order of the gallery, newest first
+    private static List<PageCursor> newest;
+
+    private static List<PageCursor> oldest;
+
+    @BeforeClass
+    public static void migrateAndConnect() throws SQLException {
+        connection = TestDatabase.connect();
+        seed();
+        entityManagerFactory = TestDatabase.entityManagerFactory(sql -> sql);
+
+        ImageRepository imageRepository = new ImageRepository();
+        ReflectionTestUtils.setField(imageRepository, "entMngr", SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory));
+        imageService = new ImageService();
+        ReflectionTestUtils.setField(imageService, "imageRepository", imageRepository);
+        ReflectionTestUtils.setField(imageService, "defaultPageSize", 3);
+        ReflectionTestUtils.setField(imageService, "maxPageSize", 10);
+        transactionTemplate = new TransactionTemplate(new JpaTransactionManager(entityManagerFactory));
+    }
+
+    @AfterClass
+    public static void close() throws SQLException {
+        if (entityManagerFactory != null) {
+            entityManagerFactory.close();
+        }
+        if (connection != null) {
+            unseed();
+            connection.close();
+        }
+    }
+
+    private static void seed() throws SQLException {
+        unseed();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO images (id, title, date, comment_count) " +
+                    "SELECT nextval('images_id_seq'), 'image-page-test', timestamp '2200-01-01' + d * interval '1 minute', 0 " +
+                    "FROM unnest(ARRAY[1, 2, 3, 3, 4, 5, 6]) d");
+            statement.execute("INSERT INTO images (id, title, date, comment_count) " +
+                    "SELECT nextval('images_id_seq'), 'image-page-test', timestamp '1800-01-01' + d * interval '1 minute', 0 " +
+                    "FROM generate_series(1, 5) d");
+        }
+        newest = seededCursors("date > timestamp '2100-01-01'");
+        oldest = seededCursors("date < timestamp '1900-01-01'");
+    }
+
+    private static List<PageCursor> seededCursors(String condition) throws SQLException {
+        List<PageCursor> cursors = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT id, date FROM images WHERE title = 'image-page-test' AND " + condition +
+                     " ORDER BY date DESC, id DESC")) {
+            while (result.next()) {
+                cursors.add(new PageCursor(result.getTimestamp(2), result.getInt(1)));
+            }
+        }
+        return cursors;
+    }
+
+    private static void unseed() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DELETE FROM images WHERE title = 'image-page-test'");
+        }
+    }
+
+    //This test checks that the first page starts at the newest image and has a link to the next page only
+    @Test
+    public void firstPageHasNoPreviousLink() {
+        ImagePage page = page(null, null);
+
+        assertEquals(ids(newest.subList(0, 3)), ids(page));
+        assertNull(page.getPrevCursor());
+        assertEquals(cursorOf(page, 2), page.getNextCursor());
+    }
+
+    //This test checks that following the next links visits every image once, in the order of the gallery, including the two images with the same date
+    @Test
+    public void forwardPagesContinueAfterCursor() {
+        ImagePage first = page(null, null);
+        ImagePage second = page(first.getNextCursor(), null);
+        ImagePage third = page(second.getNextCursor(), null);
+
+        List<Integer> visited = new ArrayList<>(ids(first));
+        visited.addAll(ids(second));
+        visited.addAll(ids(third).subList(0, 1));
+        assertEquals(ids(newest), visited);
+        assertEquals(cursorOf(second, 0), second.getPrevCursor());
+    }
+
+    //This test checks that the previous link of the second page leads back to the first page, newest image first, and that the first page reached that way has no previous link
+    @Test
+    public void backwardPageIsInGalleryOrder() {
+        ImagePage first = page(null, null);
+        ImagePage second = page(first.getNextCursor(), null);
+        ImagePage back = page(null, second.getPrevCursor());
+
+        assertEquals(ids(first), ids(back));
+        assertNull(back.getPrevCursor());
+        assertEquals(cursorOf(back, 2), back.getNextCursor());
+    }
+
+    //This test checks that a backward page in the middle of the gallery has links in both directions
+    @Test
+    public void backwardPageInTheMiddleHasBothLinks() {
+        ImagePage page = page(null, newest.get(5).toString());
+
+        assertEquals(ids(newest.subList(2, 5)), ids(page));
+        assertEquals(cursorOf(page, 0), page.getPrevCursor());
+        assertEquals(cursorOf(page, 2), page.getNextCursor());
+    }
+
+    //This test checks that the last page, also one which is exactly full, has a link to the previous page only
+    @Test
+    public void lastPageHasNoNextLink() {
+        ImagePage partial = page(oldest.get(2).toString(), null);
+        assertEquals(ids(oldest.subList(3, 5)), ids(partial));
+        assertNull(partial.getNextCursor());
+        assertEquals(cursorOf(partial, 0), partial.getPrevCursor());
+
+        ImagePage full = page(oldest.get(1).toString(), null);
+        assertEquals(ids(oldest.subList(2, 5)), ids(full));
+        assertNull(full.getNextCursor());
+    }
+
+    //This test checks that a cursor which cannot be parsed gives the first page
+    @Test
+    public void invalidCursorGivesFirstPage() {
+        assertNull(PageCursor.parse("not-a-cursor"));
+        assertEquals(ids(newest.subList(0, 3)), ids(page("not-a-cursor", null)));
+    }
+
+    private ImagePage page(String after, String before) {
+        return transactionTemplate.execute(status -> imageService.getImagePage(after, before, 3));
+    }
+
+    private List<Integer> ids(ImagePage page) {
+        List<Integer> ids = new ArrayList<>();
+        for (ImageSummary image : page.getImages()) {
+            ids.add(image.getId());
+        }
+        return ids;
+    }
+
+    private List<Integer> ids(List<PageCursor> cursors) {
+        List<Integer> ids = new ArrayList<>();
+        for (PageCursor cursor : cursors) {
+            ids.add(cursor.getId());
+        }
+        return ids;
+    }
+
+    private String cursorOf(ImagePage page, int index) {
+        ImageSummary image = page.getImages().get(index);
+        return new PageCursor(image.getDate(), image.getId()).toString();
+    }
+}
@@ -0,0 +1,275 @@
+package ImageHoster.repository;
+
+import ImageHoster.model.Image;
+import ImageHoster.model.Tag;
+import ImageHoster.service.ImageService;
+import ImageHoster.service.SearchService;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+//Measures what editing the title and description of an image writes to Postgres, for an image which still has its content as base64 data in the row
+//The edits run through ImageService.updateImage() with the real repositories and SearchService, so they include the update of the search vector
+//The edit (Image is mapped with @DynamicUpdate) is compared with the update of every column which the edit used to issue
+//The WAL written by each update and the growth of the TOAST table of 'images', where the base64 data is stored, are measured on the TestDatabase; the test is skipped without it
+//Also checks that an edit of the tags only writes the rows of images_tags of the tags which were added or removed
+public class ImageUpdateTest {
+
+    //Size of the image content, the base64 data is a third larger
+    private static final int CONTENT_SIZE = 1024 * 1024;
+
+    //The update of all updatable columns, as Hibernate wrote it for every edit before Image was mapped with @DynamicUpdate
+    private static final String FULL_UPDATE = "UPDATE images SET date = ?, description = ?, image_key = ?, image_size = ?, imagefile = ?, " +
+            "medium_key = ?, mime_type = ?, thumbnail_key = ?, title = ?, user_id = ? WHERE id = ?";
+
+    //The UPDATE, INSERT and DELETE statements Hibernate has run since the last clear()
+    private static final List<String> updates = new ArrayList<>();
+
+    private static EntityManagerFactory entityManagerFactory;
+
+    private static Connection connection;
+
+    private static ImageService imageService;
+
+    private static TransactionTemplate transactionTemplate;
+
+    private String imageFile;
+
+    private Integer imageId;
+
+    @BeforeClass
+    public static void migrateAndConnect() {
+        connection = TestDatabase.connect();
+        entityManagerFactory = TestDatabase.entityManagerFactory(sql -> {
+            String statement = sql.trim().toLowerCase();
+            if (statement.startsWith("update") || statement.startsWith("insert") || statement.startsWith("delete")) {
+                synchronized (updates) {
+                    updates.add(sql);
+                }
+            }
+            return sql;
+        });
+
+        //Wired like in the application, the repositories use the EntityManager of the transaction started by the template
+        EntityManager sharedEntityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+        ImageRepository imageRepository = new ImageRepository();
+        ReflectionTestUtils.setField(imageRepository, "entMngr", sharedEntityManager);
+        SearchRepository searchRepository = new SearchRepository();
+        ReflectionTestUtils.setField(searchRepository, "em", sharedEntityManager);
+        SearchService searchService = new SearchService();
+        ReflectionTestUtils.setField(searchService, "searchRepository", searchRepository);
+        ReflectionTestUtils.setField(searchService, "config", "english");
+        imageService = new ImageService();
+        ReflectionTestUtils.setField(imageService, "imageRepository", imageRepository);
+        ReflectionTestUtils.setField(imageService, "searchService", searchService);
+        ReflectionTestUtils.setField(imageService, "eventPublisher", (ApplicationEventPublisher) event -> {
+        });
+        transactionTemplate = new TransactionTemplate(new JpaTransactionManager(entityManagerFactory));
+    }
+
+    @AfterClass
+    public static void close() throws SQLException {
+        if (entityManagerFactory != null) {
+            entityManagerFactory.close();
+        }
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    @Before
+    public void createImage() {
+        byte[] content = new byte[CONTENT_SIZE];
+        new Random(42).nextBytes(content);
+        imageFile = Base64.getEncoder().encodeToString(content);
+
+        Image image = new Image();
+        image.setTitle("before");
+        image.setDescription("before");
+        image.setImageFile(imageFile);
+        image.setDate(new Date());
+        inTransaction(entityManager -> entityManager.persist(image));
+        imageId = image.getId();
+        synchronized (updates) {
+            updates.clear();
+        }
+    }
+
+    @After
+    public void deleteImage() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DELETE FROM images_tags WHERE images_id = " + imageId);
+            statement.execute("DELETE FROM images WHERE id = " + imageId);
+            statement.execute("DELETE FROM tags WHERE name LIKE 'image-update-test-%'");
+        }
+    }
+
+    //This test checks that an edit of the title and description writes neither the base64 data nor the other content columns
+    //The edit takes two statements, the update of the changed columns and the update of the search vector
+    @Test
+    public void editWritesOnlyChangedColumns() {
+        editTitleAndDescription();
+
+        assertEquals(updates.toString(), 2, updates.size());
+        String update = updates.get(0).toLowerCase();
+        assertTrue(update, update.contains("title") && update.contains("description") && update.contains("date"));
+        assertFalse(update, update.contains("imagefile"));
+        assertFalse(update, update.contains("image_key"));
+        assertFalse(update, update.contains("thumbnail_key"));
+        String searchUpdate = updates.get(1).toLowerCase();
+        assertTrue(searchUpdate, searchUpdate.startsWith("update images set search_vector"));
+        assertFalse(searchUpdate, searchUpdate.contains("imagefile"));
+
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            Image image = entityManager.find(Image.class, imageId);
+            assertEquals("after", image.getTitle());
+            assertEquals(imageFile, image.getImageFile());
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    //This test checks that the edit, together with the update of the search vector, writes a small fraction of the WAL of the full update and no new TOAST data
+    //The full update hands the unchanged base64 data back to Postgres, which stores it again as a new value
+    @Test
+    public void editKeepsContentInPlace() throws SQLException {
+        long toastBefore = toastSize();
+        long walBefore = walPosition();
+        fullUpdate();
+        long fullWal = walPosition() - walBefore;
+        long fullToast = toastSize() - toastBefore;
+
+        toastBefore = toastSize();
+        walBefore = walPosition();
+        editTitleAndDescription();
+        long editWal = walPosition() - walBefore;
+        long editToast = toastSize() - toastBefore;
+
+        String measured = String.format("WAL %d bytes (edit) vs %d bytes (full update), TOAST growth %d bytes vs %d bytes",
+                editWal, fullWal, editToast, fullToast);
+        assertTrue(measured, fullWal > CONTENT_SIZE);
+        assertTrue(measured, editWal * 20 < fullWal);
+        assertEquals(measured, 0, editToast);
+    }
+
+    //This test checks that replacing one tag of an image deletes and inserts one row of images_tags, instead of deleting all the rows of the image and inserting them again
+    @Test
+    public void tagEditWritesOnlyChangedRows() throws SQLException {
+        Tag[] tags = {new Tag("image-update-test-a"), new Tag("image-update-test-b"), new Tag("image-update-test-c"), new Tag("image-update-test-d")};
+        inTransaction(entityManager -> {
+            for (Tag tag : tags) {
+                entityManager.persist(tag);
+            }
+            entityManager.find(Image.class, imageId).getTags().addAll(Arrays.asList(tags[0], tags[1], tags[2]));
+        });
+        synchronized (updates) {
+            updates.clear();
+        }
+
+        //The tags are detached, like the ones the controller passes
+        Image changes = new Image();
+        changes.setTitle("before");
+        changes.setDescription("before");
+        transactionTemplate.execute(status -> imageService.updateImage(imageId, changes, Arrays.asList(tags[1], tags[2], tags[3]), false));
+
+        List<String> joinTableWrites = new ArrayList<>();
+        for (String update : updates) {
+            if (update.toLowerCase().contains("images_tags")) {
+                joinTableWrites.add(update.toLowerCase().replaceAll("\\s+", " ").trim());
+            }
+        }
+        assertEquals(joinTableWrites.toString(), 2, joinTableWrites.size());
+        assertTrue(joinTableWrites.toString(), joinTableWrites.contains("delete from images_tags where images_id=? and tags_id=?"));
+        assertTrue(joinTableWrites.toString(), joinTableWrites.contains("insert into images_tags (images_id, tags_id) values (?, ?)"));
+
+        List<String> names = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT t.name FROM images_tags it JOIN tags t ON t.id = it.tags_id WHERE it.images_id = " + imageId + " ORDER BY t.name")) {
+            while (result.next()) {
+                names.add(result.getString(1));
+            }
+        }
+        assertEquals(Arrays.asList("image-update-test-b", "image-update-test-c", "image-update-test-d"), names);
+    }
+
+    private void editTitleAndDescription() {
+        Image changes = new Image();
+        changes.setTitle("after");
+        changes.setDescription("after");
+        transactionTemplate.execute(status -> imageService.updateImage(imageId, changes, Collections.emptyList(), false));
+    }
+
+    private void fullUpdate() throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(FULL_UPDATE)) {
+            statement.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+            statement.setString(2, "full");
+            statement.setString(3, null);
+            statement.setObject(4, null);
+            statement.setString(5, imageFile);
+            statement.setString(6, null);
+            statement.setString(7, null);
+            statement.setString(8, null);
+            statement.setString(9, "full");
+            statement.setObject(10, null);
+            statement.setInt(11, imageId);
+            statement.executeUpdate();
+        }
+    }
+
+    //The position up to which WAL has been inserted, in bytes
+    private long walPosition() throws SQLException {
+        return queryLong("SELECT pg_wal_lsn_diff(pg_current_wal_insert_lsn(), '0/0')::bigint");
+    }
+
+    //The size of the TOAST table of 'images', which only grows while no vacuum runs
+    private long toastSize() throws SQLException {
+        return queryLong("SELECT pg_relation_size(reltoastrelid) FROM pg_class WHERE relname = 'images'");
+    }
+
+    private long queryLong(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet result = statement.executeQuery(sql)) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+
+    private void inTransaction(Consumer<EntityManager> work) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            work.accept(entityManager);
+            entityManager.getTransaction().commit();
+        } finally {
+            entityManager.close();
+        }
+    }
+}
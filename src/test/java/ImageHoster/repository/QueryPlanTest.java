@@ -0,0 +1,257 @@
+package ImageHoster.repository;
+
+import ImageHoster.model.CommentCursor;
+import ImageHoster.model.PageCursor;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+//Checks that the lookups of the repositories are answered from indexes, with the schema of the Flyway migrations
+//The SQL which Hibernate generates for each lookup is captured and explained with sequential scans disabled, so that a query without a usable index still shows a 'Seq Scan'
+//The plans are the generic ones (plan_cache_mode, Postgres 12 and later), which do not depend on the values of the parameters
+//Runs against the TestDatabase, filled with test data for the duration of the test, and is skipped without it
+public class QueryPlanTest {
+
+    //The statements Hibernate has run since the last clear()
+    private static final List<String> statements = new ArrayList<>();
+
+    private static EntityManagerFactory entityManagerFactory;
+
+    private static Connection connection;
+
+    @BeforeClass
+    public static void migrateAndConnect() throws SQLException {
+        connection = TestDatabase.connect();
+        seed();
+        entityManagerFactory = TestDatabase.entityManagerFactory(sql -> {
+            synchronized (statements) {
+                statements.add(sql);
+            }
+            return sql;
+        });
+    }
+
+    @AfterClass
+    public static void close() throws SQLException {
+        if (entityManagerFactory != null) {
+            entityManagerFactory.close();
+        }
+        if (connection != null) {
+            unseed();
+            connection.close();
+        }
+    }
+
+    //In empty tables any index is as cheap as any other, so the planner may pick one which does not fit the query
+    //The tables are filled with 100 users, 10000 images with 3 of 100 tags each and 20000 comments, and analyzed, so that the plans are the ones of a database in use
+    private static void seed() throws SQLException {
+        unseed();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO users (id, username, password) " +
+                    "SELECT nextval('users_id_seq'), 'query-plan-test-' || g, 'password' FROM generate_series(1, 100) g");
+            statement.execute("INSERT INTO tags (id, name) " +
+                    "SELECT nextval('tags_id_seq'), 'query-plan-test-' || g FROM generate_series(1, 100) g");
+            statement.execute("INSERT INTO images (id, title, date, comment_count, user_id) " +
+                    "SELECT nextval('images_id_seq'), 'query-plan-test', now() - g * interval '1 minute', 2, " +
+                    "(SELECT id FROM users WHERE username = 'query-plan-test-' || (g % 100 + 1)) FROM generate_series(1, 10000) g");
+            statement.execute("INSERT INTO images_tags (images_id, tags_id) " +
+                    "SELECT i.id, t.id FROM (SELECT id, row_number() OVER (ORDER BY id) AS n FROM images WHERE title = 'query-plan-test') i " +
+                    "JOIN (SELECT id, row_number() OVER (ORDER BY id) AS n FROM tags WHERE name LIKE 'query-plan-test-%') t " +
+                    "ON t.n IN (i.n % 100 + 1, (i.n + 33) % 100 + 1, (i.n + 66) % 100 + 1)");
+            statement.execute("INSERT INTO comments (id, date, text, image_id, user_id) " +
+                    "SELECT nextval('comments_id_seq'), current_date - (i.id % 365), 'query-plan-test', i.id, i.user_id " +
+                    "FROM images i CROSS JOIN generate_series(1, 2) WHERE i.title = 'query-plan-test'");
+            statement.execute("ANALYZE users, tags, images, images_tags, comments");
+        }
+    }
+
+    private static void unseed() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DELETE FROM comments WHERE text = 'query-plan-test'");
+            statement.execute("DELETE FROM images_tags WHERE images_id IN (SELECT id FROM images WHERE title = 'query-plan-test')");
+            statement.execute("DELETE FROM images WHERE title = 'query-plan-test'");
+            statement.execute("DELETE FROM tags WHERE name LIKE 'query-plan-test-%'");
+            statement.execute("DELETE FROM users WHERE username LIKE 'query-plan-test-%'");
+        }
+    }
+
+    //This test checks that the pages of the gallery seek on the (date, id) index, forward and backward from a cursor
+    @Test
+    public void galleryPagesUseIndex() {
+        PageCursor cursor = new PageCursor(new Date(), 100);
+        assertIndexScans(imageRepository(), repository -> repository.getImagePage(null, false, 20));
+        assertIndexScans(imageRepository(), repository -> repository.getImagePage(cursor, false, 20));
+        assertIndexScans(imageRepository(), repository -> repository.getImagePage(cursor, true, 20));
+    }
+
+    //This test checks that the lookups of single images and of the cards of a tag page use the primary key
+    @Test
+    public void imageLookupsUseIndex() {
+        assertIndexScans(imageRepository(), repository -> repository.getImageByIDorTitle(1, "title"));
+        assertIndexScans(imageRepository(), repository -> repository.getImageContent(1));
+        assertIndexScans(imageRepository(), repository -> repository.confirmOwner(1, 1));
+        assertIndexScans(imageRepository(), repository -> repository.imageExists(1));
+        assertIndexScans(imageRepository(), repository -> repository.getImageSummaries(Arrays.asList(1, 2, 3)));
+    }
+
+    //This test checks that the images of tags are looked up on the (tags_id, images_id) index of the join table
+    //Any of several tags is left out: whether walking the images_id index in order beats reading the tags depends on how common the tags are
+    @Test
+    public void imagesByTagsUseIndex() {
+        assertIndexScans(imageRepository(), repository -> repository.getImageIdsByTags(Arrays.asList(1), false, null, false, 20));
+        assertIndexScans(imageRepository(), repository -> repository.getImageIdsByTags(Arrays.asList(1), false, 100, true, 20));
+        assertIndexScans(imageRepository(), repository -> repository.getImageIdsByTags(Arrays.asList(1, 2), true, 100, false, 20));
+    }
+
+    //This test checks that the tags are looked up on the unique index of their names
+    @Test
+    public void tagLookupsUseIndex() {
+        assertIndexScans(tagRepository(), repository -> repository.findTag("nature"));
+        assertIndexScans(tagRepository(), repository -> repository.findTags(Arrays.asList("nature", "travel")));
+    }
+
+    //This test checks that the login and the registration look the user up on the unique index of the username
+    @Test
+    public void userLookupsUseIndex() {
+        assertIndexScans(userRepository(), repository -> repository.checkUser("user", "password"));
+        assertIndexScans(userRepository(), repository -> repository.isUsernameTaken("user"));
+    }
+
+    //This test checks that the pages of the comments of an image seek on the (image_id, date, id) index
+    @Test
+    public void commentPagesUseIndex() {
+        assertIndexScans(commentRepository(), repository -> repository.getComments(1, null, 20));
+        assertIndexScans(commentRepository(), repository -> repository.getComments(1, new CommentCursor(LocalDate.now(), 100), 20));
+    }
+
+    private ImageRepository imageRepository() {
+        return inject(new ImageRepository(), "entMngr");
+    }
+
+    private TagRepository tagRepository() {
+        return inject(new TagRepository(), "em");
+    }
+
+    private UserRepository userRepository() {
+        return inject(new UserRepository(), "em");
+    }
+
+    private CommentRepository commentRepository() {
+        return inject(new CommentRepository(), "em");
+    }
+
+    private <T> T inject(T repository, String field) {
+        ReflectionTestUtils.setField(repository, field, entityManagerFactory.createEntityManager());
+        return repository;
+    }
+
+    //Runs the lookup and asserts that every query it ran is answered with index scans only
+    private <T> void assertIndexScans(T repository, Consumer<T> lookup) {
+        EntityManager entityManager = (EntityManager) ReflectionTestUtils.getField(repository,
+                repository instanceof ImageRepository ? "entMngr" : "em");
+        List<String> queries = new ArrayList<>();
+        synchronized (statements) {
+            statements.clear();
+        }
+        entityManager.getTransaction().begin();
+        try {
+            lookup.accept(repository);
+        } finally {
+            entityManager.getTransaction().rollback();
+            entityManager.close();
+        }
+        synchronized (statements) {
+            for (String sql : statements) {
+                if (sql.trim().toLowerCase().startsWith("select")) {
+                    queries.add(sql);
+                }
+            }
+        }
+        assertFalse("The lookup ran no query", queries.isEmpty());
+
+        for (String sql : queries) {
+            String plan = explain(sql);
+            assertFalse("Sequential scan in\n" + plan + "\nfor " + sql, plan.contains("Seq Scan"));
+            assertTrue("No index scan in\n" + plan + "\nfor " + sql, plan.contains("Index"));
+            assertFalse("Index read in full in\n" + plan + "\nfor " + sql, hasFilteredFullIndexScan(plan));
+        }
+    }
+
+    //With sequential scans disabled the planner reads a whole index instead of the table when no index fits the condition
+    //Such a scan filters the rows like a sequential scan would and has no 'Index Cond'
+    private boolean hasFilteredFullIndexScan(String plan) {
+        boolean indexScan = false;
+        boolean indexCond = false;
+        boolean filter = false;
+        for (String line : plan.split("\n")) {
+            if (line.contains("->") || !line.startsWith(" ")) {
+                if (indexScan && filter && !indexCond) {
+                    return true;
+                }
+                indexScan = line.contains("Index Scan") || line.contains("Index Only Scan");
+                indexCond = false;
+                filter = false;
+            } else if (line.contains("Index Cond:")) {
+                indexCond = true;
+            } else if (line.contains("Filter:")) {
+                filter = true;
+            }
+        }
+        return indexScan && filter && !indexCond;
+    }
+
+    //Explains the generic plan of the statement, its JDBC parameters become the parameters of a prepared statement
+    private String explain(String sql) {
+        StringBuilder positional = new StringBuilder();
+        int parameters = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                positional.append('$').append(++parameters);
+            } else {
+                positional.append(c);
+            }
+        }
+        StringBuilder arguments = new StringBuilder();
+        for (int i = 0; i < parameters; i++) {
+            arguments.append(i > 0 ? ", NULL" : "NULL");
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET enable_seqscan = off");
+            statement.execute("SET plan_cache_mode = force_generic_plan");
+            statement.execute("PREPARE plan_check AS " + positional);
+            try {
+                StringBuilder plan = new StringBuilder();
+                try (ResultSet rows = statement.executeQuery("EXPLAIN EXECUTE plan_check" + (parameters > 0 ? "(" + arguments + ")" : ""))) {
+                    while (rows.next()) {
+                        plan.append(rows.getString(1)).append('\n');
+                    }
+                }
+                return plan.toString();
+            } finally {
+                statement.execute("DEALLOCATE plan_check");
+            }
+        } catch (SQLException e) {
+            fail("Could not explain " + sql + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
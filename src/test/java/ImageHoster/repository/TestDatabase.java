@@ -0,0 +1,50 @@
+package ImageHoster.repository;
+
+import org.flywaydb.core.Flyway;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.Assume;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+//The Postgres database the repository tests run against, given by -Dimagehoster.test.datasource.url (default jdbc:postgresql://localhost:5432/imageHoster_test, created with 'createdb imageHoster_test')
+//The tests are skipped without it
+//The database is migrated before the tests, which also checks that the migrations fit the entities (hbm2ddl.auto=validate)
+class TestDatabase {
+
+    static final String URL = System.getProperty("imagehoster.test.datasource.url", "jdbc:postgresql://localhost:5432/imageHoster_test");
+    static final String USERNAME = System.getProperty("imagehoster.test.datasource.username", "postgres");
+    static final String PASSWORD = System.getProperty("imagehoster.test.datasource.password", "password");
+
+    //Opens a connection to the migrated test database, or skips the test if there is none
+    static Connection connect() {
+        Connection connection = null;
+        try {
+            connection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
+        } catch (SQLException e) {
+            Assume.assumeNoException("No test database at " + URL, e);
+        }
+
+        Flyway flyway = new Flyway();
+        flyway.setDataSource(URL, USERNAME, PASSWORD);
+        flyway.setBaselineOnMigrate(true);
+        flyway.migrate();
+        return connection;
+    }
+
+    //The persistence unit set up like in JpaConfig, with the given inspector seeing every SQL statement
+    static EntityManagerFactory entityManagerFactory(StatementInspector inspector) {
+        LocalContainerEntityManagerFactoryBean emfb = new LocalContainerEntityManagerFactoryBean();
+        emfb.setPersistenceXmlLocation("classpath:META-INF/persistence.xml");
+        emfb.setDataSource(new DriverManagerDataSource(URL, USERNAME, PASSWORD));
+        emfb.getJpaPropertyMap().put("hibernate.show_sql", "false");
+        emfb.getJpaPropertyMap().put(AvailableSettings.STATEMENT_INSPECTOR, inspector);
+        emfb.afterPropertiesSet();
+        return emfb.getObject();
+    }
+}
@@ -0,0 +1,176 @@
+package ImageHoster.service;
+
+import ImageHoster.model.Comment;
+import ImageHoster.model.Image;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+//Checks the durability guarantees documented on CommentQueue, with the database replaced by a CommentService which records the written batches
+public class CommentQueueTest {
+
+    private RecordingCommentService commentService = new RecordingCommentService();
+
+    private CommentQueue commentQueue;
+
+    @After
+    public void stopQueue() throws InterruptedException {
+        if (commentQueue != null) {
+            commentQueue.stop();
+        }
+    }
+
+    //This test checks that the queued comments are written in batches of at most 'flush-size', in the order in which they were posted, and that all of them are written when the queue is stopped
+    @Test
+    public void writesCommentsInBatchesOfAtMostFlushSize() throws InterruptedException {
+        commentQueue = startQueue(100, 3, 200);
+        List<Comment> comments = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Comment comment = comment(i);
+            comments.add(comment);
+            commentQueue.submit(comment);
+        }
+        commentQueue.stop();
+
+        List<Comment> written = new ArrayList<>();
+        for (List<Comment> batch : commentService.batches()) {
+            assertTrue(batch.size() <= 3);
+            written.addAll(batch);
+        }
+        assertEquals(comments, written);
+    }
+
+    //This test checks that a batch which is not full is written once 'flush-interval-ms' have passed, without waiting for more comments
+    @Test
+    public void writesPartialBatchAfterFlushInterval() throws InterruptedException {
+        commentQueue = startQueue(100, 50, 50);
+        Comment comment = comment(1);
+        commentQueue.submit(comment);
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (commentService.batches().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Collections.singletonList(Collections.singletonList(comment)), commentService.batches());
+    }
+
+    //This test checks that a comment is written by the posting thread when the queue is full, instead of being dropped
+    @Test
+    public void writesCommentInPostingThreadWhenQueueIsFull() throws InterruptedException {
+        commentQueue = startQueue(1, 50, 10);
+        CountDownLatch writerBusy = new CountDownLatch(1);
+        CountDownLatch releaseWriter = new CountDownLatch(1);
+        Comment first = comment(1);
+        commentService.onWrite = batch -> {
+            if (batch.contains(first)) {
+                writerBusy.countDown();
+                try {
+                    releaseWriter.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        commentQueue.submit(first);
+        assertTrue(writerBusy.await(2, TimeUnit.SECONDS));
+        Comment queued = comment(2);
+        commentQueue.submit(queued);
+        Comment overflow = comment(3);
+        commentQueue.submit(overflow);
+
+        //Written before submit() returned, while the writer is still busy with the first comment
+        assertEquals(Collections.singletonList(Collections.singletonList(overflow)), commentService.batches());
+        releaseWriter.countDown();
+        commentQueue.stop();
+        assertEquals(Arrays.asList(Collections.singletonList(overflow), Collections.singletonList(first), Collections.singletonList(queued)),
+                commentService.batches());
+    }
+
+    //This test checks that the comments of a failed batch are written one by one, so that only the comment which cannot be written is lost
+    @Test
+    public void writesCommentsOneByOneWhenBatchFails() throws InterruptedException {
+        commentQueue = startQueue(100, 3, 200);
+        Comment good = comment(1);
+        Comment bad = comment(2);
+        Comment alsoGood = comment(3);
+        commentService.onWrite = batch -> {
+            if (batch.contains(bad)) {
+                throw new IllegalStateException("image was deleted");
+            }
+        };
+
+        commentQueue.submit(good);
+        commentQueue.submit(bad);
+        commentQueue.submit(alsoGood);
+        commentQueue.stop();
+
+        assertEquals(Arrays.asList(Collections.singletonList(good), Collections.singletonList(alsoGood)), commentService.batches());
+    }
+
+    //This test checks that a comment posted after the queue has been stopped is written by the posting thread
+    @Test
+    public void writesCommentInPostingThreadAfterStop() throws InterruptedException {
+        commentQueue = startQueue(100, 50, 10);
+        commentQueue.stop();
+        assertTrue(commentService.batches().isEmpty());
+
+        Comment comment = comment(1);
+        commentQueue.submit(comment);
+        assertEquals(Collections.singletonList(Collections.singletonList(comment)), commentService.batches());
+    }
+
+    private CommentQueue startQueue(int queueCapacity, int flushSize, long flushIntervalMillis) {
+        CommentQueue queue = new CommentQueue();
+        ReflectionTestUtils.setField(queue, "commentService", commentService);
+        ReflectionTestUtils.setField(queue, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(queue, "flushSize", flushSize);
+        ReflectionTestUtils.setField(queue, "flushIntervalMillis", flushIntervalMillis);
+        ReflectionTestUtils.setField(queue, "shutdownTimeoutMillis", 5000L);
+        queue.start();
+        return queue;
+    }
+
+    private Comment comment(int number) {
+        Image image = new Image();
+        image.setId(number);
+        Comment comment = new Comment();
+        comment.setImage(image);
+        comment.setText("comment " + number);
+        return comment;
+    }
+
+    //Records the batches which were written successfully; 'onWrite' is run before a batch is recorded and may fail it
+    private static class RecordingCommentService extends CommentService {
+
+        private final List<List<Comment>> batches = new ArrayList<>();
+
+        private volatile Consumer<List<Comment>> onWrite = batch -> {
+        };
+
+        @Override
+        public void createComments(List<Comment> comments) {
+            onWrite.accept(comments);
+            synchronized (batches) {
+                batches.add(new ArrayList<>(comments));
+            }
+        }
+
+        List<List<Comment>> batches() {
+            synchronized (batches) {
+                return new ArrayList<>(batches);
+            }
+        }
+    }
+}
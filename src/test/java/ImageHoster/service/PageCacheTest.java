@@ -0,0 +1,180 @@
+package ImageHoster.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListenerFactory;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+//Checks when PageCache drops and refuses pages, with the events published by a Spring context like in the application
+//The transactions are run by a transaction manager without a database, which only drives the synchronizations the invalidation is bound to
+public class PageCacheTest {
+
+    private static final long TTL_MILLIS = 60000;
+
+    private AnnotationConfigApplicationContext context;
+
+    private PageCache pageCache;
+
+    private TransactionTemplate transactionTemplate;
+
+    @Before
+    public void startContext() {
+        context = new AnnotationConfigApplicationContext();
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("imagehoster.pagecache.ttl-ms", TTL_MILLIS);
+        properties.put("imagehoster.pagecache.max-entries", 100);
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("page-cache-test", properties));
+        //The factory registers the @TransactionalEventListener methods, like @EnableTransactionManagement does in the application
+        context.register(PageCache.class, TransactionalEventListenerFactory.class);
+        context.refresh();
+        pageCache = context.getBean(PageCache.class);
+        transactionTemplate = new TransactionTemplate(new SynchronizationOnlyTransactionManager());
+    }
+
+    @After
+    public void stopContext() {
+        context.close();
+    }
+
+    //This test checks that the pages of a changed image and the gallery pages are kept until the transaction of the change has committed, and dropped then
+    @Test
+    public void dropsPagesAfterCommit() {
+        put("/images/1", 1);
+        put("/images/2", 2);
+        put("/", null);
+
+        transactionTemplate.execute(status -> {
+            context.publishEvent(new ImageChangedEvent(1, true));
+            assertNotNull(pageCache.get("/images/1"));
+            assertNotNull(pageCache.get("/"));
+            return null;
+        });
+
+        assertNull(pageCache.get("/images/1"));
+        assertNull(pageCache.get("/"));
+        assertNotNull(pageCache.get("/images/2"));
+    }
+
+    //This test checks that a change which does not show in the gallery, like a comment, keeps the gallery pages
+    @Test
+    public void keepsGalleryForImageOnlyChange() {
+        put("/images/1", 1);
+        put("/", null);
+
+        transactionTemplate.execute(status -> {
+            context.publishEvent(new ImageChangedEvent(1, false));
+            return null;
+        });
+
+        assertNull(pageCache.get("/images/1"));
+        assertNotNull(pageCache.get("/"));
+    }
+
+    //This test checks that a change which is rolled back keeps the pages
+    @Test
+    public void keepsPagesOnRollback() {
+        put("/images/1", 1);
+
+        transactionTemplate.execute(status -> {
+            context.publishEvent(new ImageChangedEvent(1, true));
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertNotNull(pageCache.get("/images/1"));
+    }
+
+    //This test checks that a change published outside of a transaction drops the pages right away
+    @Test
+    public void dropsPagesWithoutTransaction() {
+        put("/images/1", 1);
+
+        context.publishEvent(new ImageChangedEvent(1, true));
+
+        assertNull(pageCache.get("/images/1"));
+    }
+
+    //This test checks that a page whose rendering started before a change was committed is not stored, even if it is a page of another image
+    //The page may have read the data before the change, and its invalidation has already happened
+    @Test
+    public void refusesPageRenderedBeforeInvalidation() {
+        long generation = pageCache.generation();
+        transactionTemplate.execute(status -> {
+            context.publishEvent(new ImageChangedEvent(1, true));
+            return null;
+        });
+
+        pageCache.put("/images/1", 1, body(), "text/html", "\"1\"", System.currentTimeMillis(), generation);
+        pageCache.put("/images/2", 2, body(), "text/html", "\"2\"", System.currentTimeMillis(), generation);
+        assertNull(pageCache.get("/images/1"));
+        assertNull(pageCache.get("/images/2"));
+
+        put("/images/1", 1);
+        assertNotNull(pageCache.get("/images/1"));
+    }
+
+    //This test checks that a page whose rendering started while a change was not committed yet is still stored, it is dropped by the commit
+    @Test
+    public void storesPageRenderedDuringTransaction() {
+        transactionTemplate.execute(status -> {
+            context.publishEvent(new ImageChangedEvent(1, true));
+            put("/images/1", 1);
+            assertNotNull(pageCache.get("/images/1"));
+            return null;
+        });
+
+        assertNull(pageCache.get("/images/1"));
+    }
+
+    //This test checks that a page is not returned once its time to live has passed
+    @Test
+    public void expiresPages() {
+        pageCache.put("/images/1", 1, body(), "text/html", "\"1\"", System.currentTimeMillis() - TTL_MILLIS, pageCache.generation());
+
+        assertNull(pageCache.get("/images/1"));
+    }
+
+    private void put(String key, Integer imageId) {
+        pageCache.put(key, imageId, body(), "text/html", "\"" + key + "\"", System.currentTimeMillis(), pageCache.generation());
+    }
+
+    private byte[] body() {
+        return "<html></html>".getBytes(StandardCharsets.UTF_8);
+    }
+
+    //Runs the synchronizations of a transaction, e.g. afterCommit(), without a resource behind the transaction
+    private static class SynchronizationOnlyTransactionManager extends AbstractPlatformTransactionManager {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}